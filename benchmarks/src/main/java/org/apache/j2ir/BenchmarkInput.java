@@ -0,0 +1,137 @@
+package org.apache.j2ir;
+
+import org.apache.j2ir.utils.Util;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/*
+	BenchmarkInput prepares the input of a translation: a jar file of the compiled
+	classes and the kernel config file, in a temporary directory.
+
+	An input is named either after a framework test (e.g. "XMLTest"), which is
+	compiled from the Java sources of the test resources, or a SyntheticKernel spec
+	(e.g. "synthetic:100" or "synthetic:1000:10:4:2:8").
+ */
+public class BenchmarkInput {
+	private final File dir;
+	private final File jarFile;
+	private final File configFile;
+
+	private BenchmarkInput(File dir, File jarFile, File configFile) {
+		this.dir = dir;
+		this.jarFile = jarFile;
+		this.configFile = configFile;
+	}
+
+	public static BenchmarkInput create(String name) throws IOException {
+		File dir = Files.createTempDirectory("j2ir-bench").toFile();
+		File srcDir = new File(dir, "src");
+		if (!srcDir.mkdir())
+			throw new IOException("Cannot create " + srcDir);
+
+		File configFile;
+		if (SyntheticKernel.isSpec(name))
+			configFile = SyntheticKernel.fromSpec(name).writeTo(srcDir);
+		else {
+			File testDir = new File(System.getProperty("j2ir.resources", "../src/test/resources/framework"), name);
+			configFile = new File(testDir, name + ".xml");
+			if (!configFile.exists())
+				throw new RuntimeException("Cannot find benchmark input " + configFile.getAbsolutePath());
+			for (File f : listJavaFiles(testDir))
+				Files.copy(f.toPath(), new File(srcDir, f.getName()).toPath());
+		}
+
+		File classDir = new File(dir, "classes");
+		if (!classDir.mkdir())
+			throw new IOException("Cannot create " + classDir);
+		compile(listJavaFiles(srcDir), classDir);
+
+		File jarFile = new File(dir, "input.jar");
+		writeJar(classDir, jarFile);
+		return new BenchmarkInput(dir, jarFile, configFile);
+	}
+
+	public String getJarFile() {
+		return jarFile.getPath();
+	}
+
+	public String getConfigFile() {
+		return configFile.getPath();
+	}
+
+	public String getOutputFile() {
+		return new File(dir, "output").getPath();
+	}
+
+	// Return a translator of this input with the config loaded
+	Translator getTranslator() throws Exception {
+		Translator translator = new Translator(getJarFile(), getConfigFile(), getOutputFile());
+		translator.loadConfig();
+		return translator;
+	}
+
+	public void delete() {
+		Util.deleteRecursively(dir);
+	}
+
+	static List<File> listJavaFiles(File dir) {
+		File[] files = dir.listFiles();
+		List<File> javaFiles = new ArrayList<>();
+		if (files != null) {
+			for (File f : files) {
+				if (f.getName().endsWith(".java"))
+					javaFiles.add(f);
+			}
+		}
+		return javaFiles;
+	}
+
+	// Compile with debug info as the unit tests do (javac -g)
+	static void compile(List<File> javaFiles, File classDir) throws IOException {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		if (compiler == null)
+			throw new RuntimeException("A JDK is required to compile the benchmark inputs");
+
+		try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8)) {
+			Iterable<? extends JavaFileObject> units = fileManager.getJavaFileObjectsFromFiles(javaFiles);
+			List<String> options = Arrays.asList("-g", "-nowarn", "-d", classDir.getPath());
+			if (!compiler.getTask(null, fileManager, null, options, null, units).call())
+				throw new RuntimeException("Cannot compile the benchmark input in " + classDir.getParent());
+		}
+	}
+
+	static void writeJar(File classDir, File jarFile) throws IOException {
+		try (JarOutputStream jar = new JarOutputStream(new FileOutputStream(jarFile))) {
+			addToJar(jar, classDir, "");
+		}
+	}
+
+	private static void addToJar(JarOutputStream jar, File dir, String prefix) throws IOException {
+		File[] files = dir.listFiles();
+		if (files == null)
+			return;
+		Arrays.sort(files);
+		for (File f : files) {
+			if (f.isDirectory())
+				addToJar(jar, f, prefix + f.getName() + "/");
+			else {
+				jar.putNextEntry(new JarEntry(prefix + f.getName()));
+				jar.write(Files.readAllBytes(f.toPath()));
+				jar.closeEntry();
+			}
+		}
+	}
+}
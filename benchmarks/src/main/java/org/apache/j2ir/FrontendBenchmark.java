@@ -0,0 +1,222 @@
+package org.apache.j2ir;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.BodyDeclaration;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.ConstructorDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.type.Type;
+import org.apache.j2ir.frontend.Frontend;
+import org.apache.j2ir.frontend.SourceFrontend;
+import org.apache.j2ir.model.ClassModel;
+import org.apache.j2ir.model.MethodModel;
+import org.apache.j2ir.model.SymbolTable;
+import org.apache.j2ir.utils.ClassIndex;
+import org.apache.j2ir.utils.FixupReader;
+import org.apache.j2ir.utils.Metrics;
+import org.apache.j2ir.utils.Util;
+import org.apache.j2ir.visitor.TypeEnvBuilder;
+import org.apache.j2ir.writer.CppWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/*
+	Benchmarks of the phases of the translation pipeline:
+	class index, decompilation, parsing, type environment build, type inference,
+	the call-graph closure of Kernel and the C++ emission.
+
+	Each phase is measured in isolation on the prepared results of the previous
+	phases. The decompile cache is disabled so that decompilation is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Dj2ir.logLevel=WARNING"})
+public class FrontendBenchmark {
+
+	@Param({"XMLTest", "UsedClassTest", "SingleInheritanceTest", "synthetic:100"})
+	public String input;
+
+	private BenchmarkInput benchmarkInput;
+	private Translator translator;
+	private ClassIndex classSrcMap;
+	private String entryClassFilePath;
+	private String entryJavaCode;
+	private Map<String, CompilationUnit> units;
+	private Frontend parsedFrontend;
+	private MethodDeclaration kernelMethod;
+	private Kernel kernel;
+	private List<TypedExpression> expressions;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		benchmarkInput = BenchmarkInput.create(input);
+		translator = benchmarkInput.getTranslator();
+
+		classSrcMap = Util.buildClass2SrcMapFromJar(benchmarkInput.getJarFile());
+		entryClassFilePath = classSrcMap.get(translator.getEntryClassName());
+
+		entryJavaCode = Util.decompileClass(entryClassFilePath, new Metrics());
+
+		// Parse all the classes once for the phases after parsing
+		units = new HashMap<>();
+		Frontend frontend = new SourceFrontend(null, FixupReader.getDefaultRules(), null, new Metrics());
+		for (String path : classSrcMap.values()) {
+			if (!path.contains("$"))
+				units.put(path, frontend.load(path));
+		}
+		parsedFrontend = new Frontend() {
+			@Override
+			public CompilationUnit load(String classFilePath) {
+				return units.get(classFilePath);
+			}
+
+			@Override
+			public CompilationUnit load(String classFilePath, Set<String> methodNames) {
+				return units.get(classFilePath);
+			}
+		};
+
+		kernelMethod = Util.getFirstMethodByName(units.get(entryClassFilePath), translator.getKernelName());
+		kernel = buildKernel();
+		expressions = collectExpressions(kernel.getEntryClass());
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		classSrcMap.close();
+		benchmarkInput.delete();
+	}
+
+	@Benchmark
+	public int classIndex() throws Exception {
+		try (ClassIndex index = Util.buildClass2SrcMapFromJar(benchmarkInput.getJarFile())) {
+			return index.get(translator.getEntryClassName()).length() + index.size();
+		}
+	}
+
+	@Benchmark
+	public String decompile() throws Exception {
+		return Util.decompileClass(entryClassFilePath, new Metrics());
+	}
+
+	@Benchmark
+	public CompilationUnit parseDecompiledCode() throws Exception {
+		return Util.parseDecompiledCode(new StringReader(entryJavaCode), null);
+	}
+
+	@Benchmark
+	public int typeEnvBuild() {
+		int size = 0;
+		for (CompilationUnit cu : units.values()) {
+			for (TypeDeclaration type : cu.getTypes()) {
+				if (!(type instanceof ClassOrInterfaceDeclaration))
+					continue;
+				SymbolTable classEnv = new SymbolTable();
+				new TypeEnvBuilder(type).build(classEnv);
+				size += classEnv.size();
+
+				for (BodyDeclaration member : type.getMembers()) {
+					if (!(member instanceof MethodDeclaration || member instanceof ConstructorDeclaration))
+						continue;
+					SymbolTable methodEnv = classEnv.push();
+					new TypeEnvBuilder(member).build(methodEnv);
+					size += methodEnv.size();
+				}
+			}
+		}
+		return size;
+	}
+
+	@Benchmark
+	public int typeInference() {
+		int numTypes = 0;
+		for (TypedExpression e : expressions) {
+			if (Util.getExpType(e.expression, e.env, e.classModel) != null)
+				numTypes += 1;
+		}
+		return numTypes;
+	}
+
+	@Benchmark
+	public Kernel kernelClosure() throws Exception {
+		return buildKernel();
+	}
+
+	@Benchmark
+	public int cppEmit() {
+		CppWriter cppWriter = kernel.writeCpp();
+		return cppWriter.getCode().length() + cppWriter.getHeaderCode().length();
+	}
+
+	private Kernel buildKernel() throws Exception {
+		return new Kernel(kernelMethod, classSrcMap, parsedFrontend, translator.getKernelAttr(), new Options(), new Metrics());
+	}
+
+	// Collect the typeable expressions of the entry class methods with their type environments
+	private static List<TypedExpression> collectExpressions(ClassModel classModel) {
+		List<TypedExpression> list = new ArrayList<>();
+		for (MethodModel methodModel : classModel.getMethods().values()) {
+			if (methodModel.getDecl() != null)
+				collectExpressions(methodModel.getDecl(), methodModel, classModel, list);
+		}
+		return list;
+	}
+
+	private static void collectExpressions(Node n, MethodModel methodModel, ClassModel classModel,
+			List<TypedExpression> list) {
+		if (n instanceof Expression) {
+			Map<String, Type> env = methodModel.getTypeEnv(n);
+			if (isTypeable((Expression) n, env, classModel))
+				list.add(new TypedExpression((Expression) n, env, classModel));
+		}
+		for (Node child : n.getChildrenNodes())
+			collectExpressions(child, methodModel, classModel, list);
+	}
+
+	// Some expressions can only be typed in the context of the MethodVisitor
+	// (e.g. method calls on objects of other classes)
+	private static boolean isTypeable(Expression e, Map<String, Type> env, ClassModel classModel) {
+		try {
+			return Util.getExpType(e, env, classModel) != null;
+		} catch (RuntimeException ex) {
+			return false;
+		}
+	}
+
+	private static class TypedExpression {
+		final Expression expression;
+		final Map<String, Type> env;
+		final ClassModel classModel;
+
+		TypedExpression(Expression expression, Map<String, Type> env, ClassModel classModel) {
+			this.expression = expression;
+			this.env = env;
+			this.classModel = classModel;
+		}
+	}
+}
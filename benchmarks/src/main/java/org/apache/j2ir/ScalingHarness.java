@@ -0,0 +1,174 @@
+package org.apache.j2ir;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+	ScalingHarness translates synthetic kernels of growing sizes and records the
+	wall time and the peak heap usage of every translation to a CSV file, so the
+	scaling curves of J2IR can be tracked.
+
+	Every list option takes comma separated values and all the combinations are run.
+	Each translation runs in a new JVM so the heap usage of the runs is independent.
+
+	  java -cp target/benchmarks.jar org.apache.j2ir.ScalingHarness \
+	      --classes 10,100,1000 --methods 10 --call-depth 4 --inheritance-depth 2 \
+	      --method-size 8 --repeat 3 --xmx 4g --out scaling.csv
+
+	The decompile cache is disabled in the translations unless --cache <dir> is given.
+ */
+public class ScalingHarness {
+	final private static String RESULT_PREFIX = "SCALING-RESULT ";
+	final private static String CSV_HEADER = "spec,classes,methodsPerClass,callDepth,inheritanceDepth,methodSize,"
+			+ "run,timeMs,peakHeapMB,translatedClasses,translatedMethods,cppBytes";
+
+	public static void main(String[] args) throws Exception {
+		if (args.length == 4 && args[0].equals("--run")) {
+			runTranslation(args[1], args[2], args[3]);
+			return;
+		}
+
+		Map<String, String> options = parseOptions(args);
+		List<Integer> classes = parseList(options, "classes", "10,100,1000");
+		List<Integer> methods = parseList(options, "methods", "1");
+		List<Integer> callDepths = parseList(options, "call-depth", "1");
+		List<Integer> inheritanceDepths = parseList(options, "inheritance-depth", "1");
+		List<Integer> methodSizes = parseList(options, "method-size", "3");
+		int repeat = Integer.parseInt(getOption(options, "repeat", "1"));
+		String xmx = getOption(options, "xmx", "4g");
+		String cacheDir = options.get("cache");
+
+		try (PrintWriter csv = new PrintWriter(Files.newBufferedWriter(
+				new File(getOption(options, "out", "scaling.csv")).toPath(), StandardCharsets.UTF_8))) {
+			csv.println(CSV_HEADER);
+			for (int c : classes) {
+				for (int m : methods) {
+					for (int cd : callDepths) {
+						for (int id : inheritanceDepths) {
+							for (int ms : methodSizes) {
+								SyntheticKernel kernel = new SyntheticKernel(c, m, cd, id, ms);
+								for (int run = 0; run < repeat; run += 1) {
+									String row = runPoint(kernel, run, xmx, cacheDir);
+									csv.println(kernel.getSpec() + "," + c + "," + m + "," + cd + "," + id + "," + ms
+											+ "," + run + "," + row);
+									csv.flush();
+								}
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+
+	// Translate a kernel in a new JVM and return the measured CSV columns
+	private static String runPoint(SyntheticKernel kernel, int run, String xmx, String cacheDir) throws Exception {
+		System.out.println("Translating " + kernel.getSpec() + " (run " + run + ")");
+		BenchmarkInput input = BenchmarkInput.create(kernel.getSpec());
+		try {
+			List<String> command = new ArrayList<>();
+			command.add(new File(System.getProperty("java.home"), "bin" + File.separator + "java").getPath());
+			command.add("-Xmx" + xmx);
+			command.add("-Dj2ir.logLevel=WARNING");
+			command.add("-Dj2ir.metricsReport=true");
+			if (cacheDir != null)
+				command.add("-Dj2ir.cache.dir=" + cacheDir);
+			command.add("-cp");
+			command.add(System.getProperty("java.class.path"));
+			command.add(ScalingHarness.class.getName());
+			command.addAll(Arrays.asList("--run", input.getJarFile(), input.getConfigFile(), input.getOutputFile()));
+
+			File log = new File(input.getOutputFile() + ".log");
+			Process process = new ProcessBuilder(command).redirectError(log).start();
+			String result = null;
+			try (BufferedReader br = new BufferedReader(new InputStreamReader(
+					process.getInputStream(), StandardCharsets.UTF_8))) {
+				String line;
+				while ((line = br.readLine()) != null) {
+					if (line.startsWith(RESULT_PREFIX))
+						result = line.substring(RESULT_PREFIX.length());
+				}
+			}
+			if (process.waitFor() != 0 || result == null) {
+				System.err.println(new String(Files.readAllBytes(log.toPath()), StandardCharsets.UTF_8));
+				throw new RuntimeException("Translation of " + kernel.getSpec() + " failed");
+			}
+
+			String metrics = new String(Files.readAllBytes(
+					new File(input.getOutputFile() + ".metrics.json").toPath()), StandardCharsets.UTF_8);
+			long cppBytes = new File(input.getOutputFile() + ".cpp").length() + new File(input.getOutputFile() + ".h").length();
+			return result + "," + getCounter(metrics, "classes") + "," + getCounter(metrics, "methods") + "," + cppBytes;
+		} finally {
+			input.delete();
+		}
+	}
+
+	// Run one translation in this JVM and print the time and the peak heap usage
+	private static void runTranslation(String jarFiles, String configFile, String outputFile) throws Exception {
+		List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+				heapPools.add(pool);
+			}
+		}
+
+		long start = System.nanoTime();
+		new Translator(jarFiles, configFile, outputFile).translate();
+		long time = System.nanoTime() - start;
+
+		// Sum of the peaks of the pools, an upper bound of the peak heap usage
+		long peak = 0;
+		for (MemoryPoolMXBean pool : heapPools)
+			peak += pool.getPeakUsage().getUsed();
+
+		System.out.println(RESULT_PREFIX + String.format(Locale.ROOT, "%.1f,%.1f", time / 1e6, peak / (1024.0 * 1024.0)));
+	}
+
+	private static long getCounter(String metrics, String counter) {
+		Matcher m = Pattern.compile("\"" + counter + "\": (\\d+)").matcher(metrics);
+		return m.find() ? Long.parseLong(m.group(1)) : -1;
+	}
+
+	private static Map<String, String> parseOptions(String[] args) {
+		Map<String, String> options = new HashMap<>();
+		for (int i = 0; i < args.length; i += 1) {
+			if (!args[i].startsWith("--"))
+				throw new RuntimeException("Invalid option " + args[i]);
+			String name = args[i].substring(2);
+			if (i + 1 < args.length)
+				options.put(name, args[++i]);
+			else
+				throw new RuntimeException("Missing value of option " + args[i]);
+		}
+		return options;
+	}
+
+	private static String getOption(Map<String, String> options, String name, String defaultValue) {
+		String value = options.get(name);
+		return (value == null) ? defaultValue : value;
+	}
+
+	private static List<Integer> parseList(Map<String, String> options, String name, String defaultValue) {
+		List<Integer> values = new ArrayList<>();
+		for (String v : getOption(options, name, defaultValue).split(","))
+			values.add(Integer.parseInt(v.trim()));
+		return values;
+	}
+}
@@ -0,0 +1,193 @@
+package org.apache.j2ir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+	SyntheticKernel generates the Java sources and the config file of a kernel
+	of a given shape, to benchmark and track the scaling of large inputs.
+
+	- numClasses: number of classes (C0, C1, ...)
+	- methodsPerClass: number of methods of a class (f0, f1, ...), fi calls fi+1
+	- callDepth: length of the call chains between classes. The last method of
+	  a class calls f0 of the next class in its chain, and the kernel method
+	  (SynthKernel.compute) calls f0 of the first class of every chain.
+	- inheritanceDepth: length of the inheritance chains (as in SingleInheritanceTest).
+	  A class extends the previous class unless it starts a chain.
+	- methodSize: number of statements of a method besides the calls
+
+	A spec "synthetic:<classes>[:<methods>:<call depth>:<inheritance depth>:<method size>]"
+	selects a kernel in the benchmarks.
+ */
+public class SyntheticKernel {
+	final public static String KERNEL_CLASS = "SynthKernel";
+	final public static String KERNEL_METHOD = "compute";
+	final public static String SPEC_PREFIX = "synthetic:";
+
+	private final int numClasses;
+	private final int methodsPerClass;
+	private final int callDepth;
+	private final int inheritanceDepth;
+	private final int methodSize;
+
+	public SyntheticKernel(int numClasses, int methodsPerClass, int callDepth, int inheritanceDepth, int methodSize) {
+		if (numClasses < 1 || methodsPerClass < 1 || callDepth < 1 || inheritanceDepth < 1 || methodSize < 0)
+			throw new RuntimeException("Invalid synthetic kernel shape");
+		this.numClasses = numClasses;
+		this.methodsPerClass = methodsPerClass;
+		this.callDepth = callDepth;
+		this.inheritanceDepth = inheritanceDepth;
+		this.methodSize = methodSize;
+	}
+
+	public SyntheticKernel(int numClasses) {
+		this(numClasses, 1, 1, 1, 3);
+	}
+
+	public static boolean isSpec(String spec) {
+		return spec.startsWith(SPEC_PREFIX);
+	}
+
+	public static SyntheticKernel fromSpec(String spec) {
+		String[] fields = spec.substring(SPEC_PREFIX.length()).split(":");
+		if (fields.length == 1)
+			return new SyntheticKernel(Integer.parseInt(fields[0]));
+		else if (fields.length == 5)
+			return new SyntheticKernel(Integer.parseInt(fields[0]), Integer.parseInt(fields[1]),
+					Integer.parseInt(fields[2]), Integer.parseInt(fields[3]), Integer.parseInt(fields[4]));
+		throw new RuntimeException("Invalid synthetic kernel spec " + spec);
+	}
+
+	public String getSpec() {
+		return SPEC_PREFIX + numClasses + ":" + methodsPerClass + ":" + callDepth + ":" + inheritanceDepth + ":" + methodSize;
+	}
+
+	public int getNumClasses() {
+		return numClasses;
+	}
+
+	public int getNumMethods() {
+		return numClasses * methodsPerClass;
+	}
+
+	// Return the Java sources keyed by file name
+	public Map<String, String> generate() {
+		Map<String, String> sources = new LinkedHashMap<>();
+		sources.put(KERNEL_CLASS + ".java", generateKernelClass());
+		for (int i = 0; i < numClasses; i += 1)
+			sources.put("C" + i + ".java", generateClass(i));
+		return sources;
+	}
+
+	private String generateKernelClass() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("public class ").append(KERNEL_CLASS).append(" {\n\n");
+		sb.append("\tpublic static int ").append(KERNEL_METHOD).append("(int n) {\n");
+		sb.append("\t\tint r = 0;\n");
+		for (int i = 0; i < numClasses; i += callDepth) {
+			sb.append("\t\tC").append(i).append(" o").append(i).append(" = new C").append(i).append("(n);\n");
+			sb.append("\t\tr += o").append(i).append(".f0(n);\n");
+		}
+		sb.append("\t\treturn r;\n");
+		sb.append("\t}\n");
+		sb.append("}\n");
+		return sb.toString();
+	}
+
+	private String generateClass(int i) {
+		boolean isBase = (i % inheritanceDepth == 0);
+		int callee = ((i + 1) % callDepth != 0 && i + 1 < numClasses) ? i + 1 : -1;
+
+		StringBuilder sb = new StringBuilder();
+		sb.append("public class C").append(i);
+		if (!isBase)
+			sb.append(" extends C").append(i - 1);
+		sb.append(" {\n");
+		if (isBase)
+			sb.append("\tint val;\n");
+		sb.append("\n");
+
+		sb.append("\tpublic C").append(i).append("(int v) {\n");
+		sb.append(isBase ? "\t\tval = v;\n" : "\t\tsuper(v);\n");
+		sb.append("\t}\n");
+
+		for (int j = 0; j < methodsPerClass; j += 1) {
+			sb.append("\n\tpublic int f").append(j).append("(int x) {\n");
+			sb.append("\t\tint s = val + x;\n");
+			for (String stmt : generateStatements(i, j))
+				sb.append("\t\t").append(stmt).append("\n");
+			if (j + 1 < methodsPerClass)
+				sb.append("\t\ts += f").append(j + 1).append("(x);\n");
+			else if (callee >= 0) {
+				sb.append("\t\tC").append(callee).append(" o = new C").append(callee).append("(x);\n");
+				sb.append("\t\ts += o.f0(x);\n");
+			}
+			sb.append("\t\treturn s;\n");
+			sb.append("\t}\n");
+		}
+		sb.append("}\n");
+		return sb.toString();
+	}
+
+	private List<String> generateStatements(int i, int j) {
+		List<String> stmts = new ArrayList<>();
+		for (int k = 0; k < methodSize; k += 1) {
+			switch (k % 3) {
+				case 0:
+					stmts.add("s = s * 31 + x + " + (i + j + k) + ";");
+					break;
+				case 1:
+					stmts.add("if (s > 100000) s = s % " + (k + 7) + ";");
+					break;
+				default:
+					stmts.add("for (int k = 0; k < x; k++) s += k * " + (j + 1) + ";");
+			}
+		}
+		return stmts;
+	}
+
+	public String generateConfig() {
+		return "<?xml version=\"1.0\"?>\n<kernel name=\"" + KERNEL_CLASS + "." + KERNEL_METHOD + "\"></kernel>\n";
+	}
+
+	// Write the sources and the config file to a directory and return the config file
+	public File writeTo(File dir) throws IOException {
+		Map<String, String> sources = generate();
+		for (String fileName : sources.keySet())
+			Files.write(new File(dir, fileName).toPath(), sources.get(fileName).getBytes(StandardCharsets.UTF_8));
+
+		File configFile = new File(dir, KERNEL_CLASS + ".xml");
+		Files.write(configFile.toPath(), generateConfig().getBytes(StandardCharsets.UTF_8));
+		return configFile;
+	}
+
+	// Write the sources, the config file and the jar file of a kernel to a directory
+	public static void main(String[] args) throws Exception {
+		if (args.length != 2 && args.length != 6) {
+			System.err.println("Usage: SyntheticKernel <Output dir> <Classes> "
+					+ "[<Methods per class> <Call depth> <Inheritance depth> <Method size>]");
+			System.exit(2);
+		}
+		SyntheticKernel kernel = (args.length == 2) ? new SyntheticKernel(Integer.parseInt(args[1])) :
+				new SyntheticKernel(Integer.parseInt(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]),
+						Integer.parseInt(args[4]), Integer.parseInt(args[5]));
+
+		File dir = new File(args[0]);
+		File srcDir = new File(dir, "src");
+		File classDir = new File(dir, "classes");
+		if (!srcDir.mkdirs() && !srcDir.exists() || !classDir.mkdirs() && !classDir.exists())
+			throw new IOException("Cannot create " + dir);
+
+		File configFile = kernel.writeTo(srcDir);
+		Files.copy(configFile.toPath(), new File(dir, configFile.getName()).toPath());
+		BenchmarkInput.compile(BenchmarkInput.listJavaFiles(srcDir), classDir);
+		BenchmarkInput.writeJar(classDir, new File(dir, KERNEL_CLASS + ".jar"));
+		System.out.println("Generated " + kernel.getSpec() + " in " + dir);
+	}
+}
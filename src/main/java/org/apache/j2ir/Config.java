@@ -8,5 +8,15 @@ class Config {
 
 	static {
 		kernelAttrList.add("length");
+
+		// Array partitioning (see writer.ArrayPartition)
+		kernelAttrList.add("partition");
+		kernelAttrList.add("factor");
+		kernelAttrList.add("dim");
+
+		// Kernel port interfaces (see writer.KernelInterface)
+		kernelAttrList.add("interface");
+		kernelAttrList.add("bundle");
+		kernelAttrList.add("burst");
 	}
 }
\ No newline at end of file
@@ -0,0 +1,60 @@
+package org.apache.j2ir;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/*
+	J2IRClient sends a translation request to a running J2IRServer.
+	It takes the same arguments as J2IR and exits with a non-zero status if the
+	translation fails. Paths are made absolute since the server may run in
+	another working directory. The request starts with the token which the
+	server wrote to its token file (see J2IRServer).
+ */
+public class J2IRClient {
+
+	public static void main(String[] args) throws Exception {
+		if (args.length != 3) {
+			System.err.println("Usage: java -cp j2ir.jar org.apache.j2ir.J2IRClient <Jar files> <Config file> <Output file>");
+			System.exit(2);
+		}
+
+		StringBuilder jarFiles = new StringBuilder();
+		for (String jar : args[0].split(";")) {
+			if (jarFiles.length() > 0)
+				jarFiles.append(";");
+			jarFiles.append(new File(jar).getAbsolutePath());
+		}
+
+		int port = J2IRServer.getPort();
+		File tokenFile = J2IRServer.getTokenFile(port);
+		if (!tokenFile.exists()) {
+			System.err.println("ERROR Cannot find the token file " + tokenFile + " of the J2IR server");
+			System.exit(1);
+		}
+		String token = J2IRServer.readToken(tokenFile);
+
+		String response;
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+			 PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+			 BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+
+			out.println(token);
+			out.println(jarFiles);
+			out.println(new File(args[1]).getAbsolutePath());
+			out.println(new File(args[2]).getAbsolutePath());
+			out.flush();
+			response = in.readLine();
+		}
+
+		if (!"OK".equals(response)) {
+			System.err.println(response == null ? "ERROR No response from the J2IR server" : response);
+			System.exit(1);
+		}
+	}
+}
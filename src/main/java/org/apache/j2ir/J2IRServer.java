@@ -0,0 +1,182 @@
+package org.apache.j2ir;
+
+import org.apache.j2ir.frontend.ParseCache;
+import org.apache.j2ir.utils.DecompileCache;
+import org.apache.j2ir.utils.J2IRLogger;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+/*
+	J2IRServer keeps a J2IR JVM alive and translates kernels on request, so the
+	opened jar files, the class index, the decompile cache and the JIT-compiled
+	code are reused across translations.
+
+	The requests are handled concurrently by a pool of handler threads and the
+	translations build their classes with one worker pool shared by all of them,
+	so the server runs at most twice the number of threads of the options. The
+	parsed classes are kept in a parse cache shared by the translations, and so are
+	the decompiled classes when the decompile cache is enabled (see Options).
+
+	It listens on the TCP loopback interface. A request is four lines (the token
+	of the server, then the jar files, config file and output file, the same as
+	the command line arguments of J2IR) and the response is one line, either "OK"
+	or "ERROR <message>". J2IRClient sends a request with the command line
+	contract of J2IR.
+
+	Trust model: a translation reads and writes files with the rights of the user
+	who runs the server, and any local process can connect to a loopback port.
+	So the server generates a random token when it starts and writes it to a file
+	which only its user can read (and deletes it when it stops); requests without
+	the token are rejected. Anyone who can read the token file, i.e. the user and
+	root, can translate as the user. The token is sent in clear text, which is
+	safe only because the connection never leaves the host.
+
+	Settings (system properties):
+	- j2ir.port: port to listen on (default: 7811)
+	- j2ir.server.tokenFile: token file (default: ~/.j2ir/server-<port>.token)
+	- j2ir.parseCache.entries: number of parsed classes kept in memory (default: 1024)
+	- j2ir.cache.memEntries: number of decompiled classes kept in memory (default: 256)
+ */
+public class J2IRServer {
+	final private static Logger logger = (new J2IRLogger()).logger;
+	final public static int DEFAULT_PORT = 7811;
+
+	final private static ParseCache parseCache = new ParseCache(Integer.getInteger("j2ir.parseCache.entries", 1024));
+
+	public static void main(String[] args) throws IOException {
+		int port = (args.length > 0) ? Integer.parseInt(args[0]) : getPort();
+
+		Options options = new Options();
+		int numThreads = options.getNumThreads();
+		final DecompileCache decompileCache = options.isCacheEnabled() ?
+				new DecompileCache(options.getCacheDir(), options.getCacheMaxSize() * 1024 * 1024,
+						Integer.getInteger("j2ir.cache.memEntries", DecompileCache.DEFAULT_MEM_ENTRIES)) : null;
+		final File tokenFile = getTokenFile(port);
+		final String token = createToken(tokenFile);
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				tokenFile.delete();
+			}
+		});
+
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		final ExecutorService workers = Executors.newFixedThreadPool(numThreads);
+		try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+			logger.info("J2IR server listening on " + server.getLocalSocketAddress() + ", token file " + tokenFile);
+			while (true) {
+				final Socket socket = server.accept();
+				executor.submit(new Runnable() {
+					@Override
+					public void run() {
+						handle(socket, token, workers, decompileCache);
+					}
+				});
+			}
+		} finally {
+			executor.shutdownNow();
+			workers.shutdownNow();
+		}
+	}
+
+	static int getPort() {
+		return Integer.getInteger("j2ir.port", DEFAULT_PORT);
+	}
+
+	static File getTokenFile(int port) {
+		String path = System.getProperty("j2ir.server.tokenFile");
+		if (path == null)
+			path = System.getProperty("user.home") + File.separator + ".j2ir" + File.separator + "server-" + port + ".token";
+		return new File(path);
+	}
+
+	static String readToken(File tokenFile) throws IOException {
+		return new String(Files.readAllBytes(tokenFile.toPath()), StandardCharsets.UTF_8).trim();
+	}
+
+	// Generate a random token and write it to a new file which only the user can read
+	private static String createToken(File tokenFile) throws IOException {
+		byte[] bytes = new byte[32];
+		new SecureRandom().nextBytes(bytes);
+		StringBuilder sb = new StringBuilder();
+		for (byte b : bytes)
+			sb.append(String.format("%02x", b));
+		String token = sb.toString();
+
+		File dir = tokenFile.getAbsoluteFile().getParentFile();
+		if (!dir.exists() && !dir.mkdirs() && !dir.exists())
+			throw new IOException("Cannot create " + dir);
+		Path path = tokenFile.toPath();
+		Files.deleteIfExists(path);
+		if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix"))
+			Files.createFile(path, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+		else {
+			Files.createFile(path);
+			if (!tokenFile.setReadable(false, false) || !tokenFile.setReadable(true, true)
+					|| !tokenFile.setWritable(false, false) || !tokenFile.setWritable(true, true))
+				throw new IOException("Cannot restrict the permissions of " + tokenFile);
+		}
+		Files.write(path, token.getBytes(StandardCharsets.UTF_8));
+		return token;
+	}
+
+	private static void handle(Socket socket, String token, ExecutorService workers, DecompileCache decompileCache) {
+		try (Socket s = socket;
+			 BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+			 PrintWriter out = new PrintWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8))) {
+
+			String requestToken = in.readLine();
+			if (requestToken == null || !MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8),
+					requestToken.getBytes(StandardCharsets.UTF_8))) {
+				logger.warning("Rejected a request with an invalid token from " + s.getRemoteSocketAddress());
+				out.println("ERROR Invalid token");
+				out.flush();
+				return;
+			}
+
+			String jarFiles = in.readLine();
+			String configFile = in.readLine();
+			String outputFile = in.readLine();
+			if (jarFiles == null || configFile == null || outputFile == null) {
+				out.println("ERROR Incomplete request");
+				out.flush();
+				return;
+			}
+
+			long start = System.currentTimeMillis();
+			try {
+				Translator translator = new Translator(jarFiles, configFile, outputFile);
+				translator.setExecutor(workers);
+				translator.setParseCache(parseCache);
+				translator.setDecompileCache(decompileCache);
+				translator.translate();
+				out.println("OK");
+				logger.info("Translated " + configFile + " in " + (System.currentTimeMillis() - start) + " ms");
+			} catch (Exception e) {
+				logger.severe("Failed to translate " + configFile + ": " + e);
+				out.println("ERROR " + String.valueOf(e).replace('\n', ' '));
+			}
+			out.flush();
+		} catch (IOException e) {
+			logger.warning("Connection error: " + e);
+		}
+	}
+}
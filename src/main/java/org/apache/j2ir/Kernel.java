@@ -8,29 +8,65 @@ import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
 import com.github.javaparser.ast.body.ConstructorDeclaration;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.type.ClassOrInterfaceType;
+import org.apache.j2ir.frontend.Frontend;
 import org.apache.j2ir.model.ClassModel;
 import org.apache.j2ir.model.MethodModel;
+import org.apache.j2ir.model.MethodSignature;
+import org.apache.j2ir.model.SymbolTable;
+import org.apache.j2ir.utils.AstPruner;
 import org.apache.j2ir.utils.J2IRLogger;
+import org.apache.j2ir.utils.Metrics;
 import org.apache.j2ir.utils.Util;
 import org.apache.j2ir.visitor.MethodVisitor;
 import org.apache.j2ir.writer.CppWriter;
+import org.apache.j2ir.writer.LoopDirectives;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 public class Kernel {
 	final private static Logger logger = (new J2IRLogger()).logger;
 	private final ClassModel entryClass;
 	private final Map<String, Map<String, String>> attr;
+	private final Frontend frontend;
+	private final Options options;
+	private final Metrics metrics;
 	private Map<String, ClassModel> usedClasses = new HashMap<>();
+	private LoopDirectives loopDirectives = new LoopDirectives();
 
-	Kernel(MethodDeclaration kernelMethod, Map<String, String> classSrcMap, Map<String, Map<String, String>> attr)
+	// Names of the decompiled methods of the classes in lazy mode
+	private final Map<String, Set<String>> loadedMethods = new ConcurrentHashMap<>();
+
+	Kernel(MethodDeclaration kernelMethod, Map<String, String> classSrcMap, Frontend frontend,
+				 Map<String, Map<String, String>> attr, Options options, Metrics metrics)
+			throws ParseException, IOException, InterruptedException {
+		this(kernelMethod, classSrcMap, frontend, attr, options, metrics, null);
+	}
+
+	// The classes are built with the given executor, or with a pool of the kernel if it is null
+	Kernel(MethodDeclaration kernelMethod, Map<String, String> classSrcMap, Frontend frontend,
+				 Map<String, Map<String, String>> attr, Options options, Metrics metrics, ExecutorService executor)
 			throws ParseException, IOException, InterruptedException {
 		this.attr = attr;
+		this.frontend = frontend;
+		this.options = options;
+		this.metrics = metrics;
 
 		// Initial main class
 		ClassModel tmpModel = null;
@@ -46,127 +82,338 @@ public class Kernel {
 			throw new RuntimeException(
 					"Cannot find the class declaration for the input method.");
 		entryClass = tmpModel;
+		if (options.isBoundedMemory() && node.getParentNode() instanceof CompilationUnit)
+			AstPruner.pruneUnit((CompilationUnit) node.getParentNode(), entryClass.getDecl());
 
 		// Setup kernel method
 		entryClass.addMethod(kernelMethod, true);
+		if (options.isLazyDecompile())
+			loadedMethods.put(entryClass.getName(), Collections.singleton(kernelMethod.getName()));
 
 		// Build type environment for class and kernel method
+		Metrics.Phase phase = metrics.start(Metrics.TYPE_ENV, entryClass.getName());
 		entryClass.buildOrUpdateTypeEnv();
 		entryClass.getKernelMethod().buildOrUpdateTypeEnv();
+		phase.end();
 
 		// Traverse kernel method
+		phase = metrics.start(Metrics.VISIT, entryClass.getName());
 		MethodVisitor methodVisitor = new MethodVisitor(usedClasses);
 		methodVisitor.visit(kernelMethod, entryClass.getKernelMethod());
+		phase.end();
 		logger.info(entryClass.toString());
 
 		// Build models for reference classes/methods
-		boolean done = false;
-		int iter = 1;
-		while (!done) {
-			logger.info("Processing reference class iteration #" + iter);
+		if (executor != null)
+			buildReferenceModels(methodVisitor, classSrcMap, executor);
+		else {
+			executor = Executors.newFixedThreadPool(options.getNumThreads());
+			try {
+				buildReferenceModels(methodVisitor, classSrcMap, executor);
+			} finally {
+				executor.shutdownNow();
+			}
+		}
 
-			// Temporary list for reference classes
-			Map<String, ClassModel> tmpUsedClasses = new HashMap<>();
+		if (options.isBoundedMemory()) {
+			AstPruner.pruneUnreachable(entryClass);
+			for (ClassModel classModel : usedClasses.values())
+				AstPruner.pruneUnreachable(classModel);
+		}
+	}
 
-			for (String cls : usedClasses.keySet()) {
-				ClassModel classModel = usedClasses.get(cls);
-				if (classModel.isBuilt())
-					continue;
+	// Compute the call-graph closure of the kernel method with a worklist of methods.
+	// Each reachable method is visited exactly once. Methods of classes which have not
+	// been built yet are deferred to the next wave, which first builds those classes.
+	private void buildReferenceModels(MethodVisitor kernelVisitor, Map<String, String> classSrcMap,
+			ExecutorService executor) throws ParseException, IOException, InterruptedException {
 
-				logger.info("\tProcessing class " + cls);
+		Set<MethodModel> queued = Collections.newSetFromMap(new IdentityHashMap<MethodModel, Boolean>());
+		queued.add(entryClass.getKernelMethod());
 
-				buildClassModelFromSource(classModel, classSrcMap);
+		Deque<MethodModel> nextWave = new ArrayDeque<>();
+		List<ClassModel> newClasses = new ArrayList<>();
+		collectDiscovered(kernelVisitor, queued, nextWave, nextWave, newClasses);
 
-				// Check base classes
-				for (ClassOrInterfaceType base : classModel.getDecl().getExtends()) {
-					ClassModel baseModel = new ClassModel(base.getName());
-					tmpUsedClasses.put(base.getName(), baseModel);
-					classModel.addBaseClass(baseModel);
-					buildClassModelFromSource(baseModel, classSrcMap);
+		int wave = 0;
+		int numMethods = 0;
+		int maxWorklist = 0;
+		while (!nextWave.isEmpty() || !newClasses.isEmpty()) {
+			wave += 1;
+			logger.info("Processing reference class wave #" + wave);
+
+			buildClassModelsWithBases(newClasses, classSrcMap, executor);
+			newClasses = new ArrayList<>();
+
+			Deque<MethodModel> worklist = nextWave;
+			nextWave = new ArrayDeque<>();
+			while (!worklist.isEmpty()) {
+				maxWorklist = Math.max(maxWorklist, worklist.size());
+				MethodModel methodModel = worklist.poll();
+				ClassModel classModel = methodModel.getClassModel();
+				if (!classModel.isBuilt()) {
+					nextWave.add(methodModel);
+					continue;
 				}
 
-				// Setup method declaration
-				boolean methodDone = false;
-				while (!methodDone) {
-					methodDone = true;
-					Set<String> sigs = new HashSet<>(classModel.getMethods().keySet());
-					for (String sig : sigs) {
-						MethodModel methodModel = classModel.getMethods().get(sig);
-						if (methodModel.isBuilt())
-							continue;
-
-						methodDone = false;
-
-						logger.info("\t\tProcessing method " + sig);
-
-						BodyDeclaration decl = Util.getMethodDeclarationBySig(classModel.getDecl(), sig);
-						if (decl == null)
-							throw new RuntimeException("Cannot find method " + sig + " from the class");
-						methodModel.setDecl(decl);
-
-						// Update sig if necessary since the method sig may be
-						// inferred from a method call expr which contains "null"
-						if (!sig.equals(Util.getMethodSig(decl))) {
-							String newSig = Util.getMethodSig(decl);
-							classModel.getMethods().remove(sig);
-							classModel.getMethods().put(newSig, methodModel);
-							logger.info("\t\t-> Update sig to " + newSig);
-						}
-
-						// Build type environment for the method
-						methodModel.buildOrUpdateTypeEnv();
-						MethodVisitor tmpMethodVisitor = new MethodVisitor(tmpUsedClasses);
-						if (methodModel.isConstructor())
-							tmpMethodVisitor.visit((ConstructorDeclaration) decl, methodModel);
-						else
-							tmpMethodVisitor.visit((MethodDeclaration) decl, methodModel);
+				MethodVisitor methodVisitor = buildMethodModel(methodModel, classSrcMap);
+				if (methodVisitor == null)
+					continue;
+				numMethods += 1;
+				collectDiscovered(methodVisitor, queued, worklist, nextWave, newClasses);
+			}
+		}
+		metrics.add("classes", usedClasses.size() + 1);
+		metrics.add("methods", numMethods + 1);
+		metrics.add("waves", wave);
+		logger.info("Finish collecting " + usedClasses.size() + " classes and " + numMethods
+				+ " methods using " + wave + " waves (max worklist size " + maxWorklist + ")");
+	}
+
+	// Queue the methods and classes discovered by a method visitor
+	private void collectDiscovered(MethodVisitor methodVisitor, Set<MethodModel> queued,
+			Deque<MethodModel> worklist, Deque<MethodModel> nextWave, List<ClassModel> newClasses) {
+
+		for (ClassModel classModel : methodVisitor.getDiscoveredClasses()) {
+			if (!classModel.isBuilt()) {
+				logger.info("\tProcessing class " + classModel.getName());
+				newClasses.add(classModel);
+			}
+		}
+		for (MethodModel methodModel : methodVisitor.getDiscoveredMethods()) {
+			if (methodModel.isBuilt() || !queued.add(methodModel))
+				continue;
+			if (methodModel.getClassModel().isBuilt())
+				worklist.add(methodModel);
+			else
+				nextWave.add(methodModel);
+		}
+	}
+
+	// Decompile and parse the new classes and then their base classes in parallel
+	private void buildClassModelsWithBases(List<ClassModel> newClasses, Map<String, String> classSrcMap,
+			ExecutorService executor) throws ParseException, IOException, InterruptedException {
+
+		List<ClassModel> toBuild = newClasses;
+		while (!toBuild.isEmpty()) {
+			buildClassModelsFromSource(toBuild, classSrcMap, executor);
+
+			// Check base classes
+			List<ClassModel> bases = new ArrayList<>();
+			for (ClassModel classModel : toBuild) {
+				for (ClassOrInterfaceType base : classModel.getDecl().getExtends()) {
+					// Reuse the base class model if it has been discovered
+					ClassModel baseModel = usedClasses.get(base.getName());
+					if (baseModel == null) {
+						baseModel = new ClassModel(base.getName());
+						usedClasses.put(base.getName(), baseModel);
 					}
+					classModel.addBaseClass(baseModel);
+					if (!baseModel.isBuilt() && !bases.contains(baseModel))
+						bases.add(baseModel);
 				}
 			}
-			if (tmpUsedClasses.size() == 0)
-				done = true;
-			else {
-				for (String clsName : tmpUsedClasses.keySet())
-					usedClasses.put(clsName, tmpUsedClasses.get(clsName));
+			toBuild = bases;
+		}
+	}
+
+	// Setup the method declaration and traverse the method.
+	// Return null if the method does not need to be visited.
+	private MethodVisitor buildMethodModel(MethodModel methodModel, Map<String, String> classSrcMap)
+			throws ParseException, IOException, InterruptedException {
+		ClassModel classModel = methodModel.getClassModel();
+
+		// Synthetic classes have no declaration to visit
+		if (classModel.getDecl() == null)
+			return null;
+
+		String sig = methodModel.getName();
+		logger.info("\t\tProcessing method " + sig);
+
+		BodyDeclaration decl = classModel.getMethodIndex().get(sig);
+		if (decl == null && options.isLazyDecompile() && reloadClassModel(classModel, classSrcMap))
+			decl = classModel.getMethodIndex().get(sig);
+		if (decl == null)
+			throw new RuntimeException("Cannot find method " + sig + " from the class");
+
+		// Update sig if necessary since the method sig may be
+		// inferred from a method call expr which contains "null"
+		String newSig = Util.getMethodSig(decl);
+		if (!sig.equals(newSig)) {
+			classModel.getMethods().remove(sig);
+			MethodModel existing = classModel.getMethod(newSig);
+			if (existing != null) {
+				// The method has been queued with its declared signature
+				logger.info("\t\t-> Same as " + newSig);
+				return null;
 			}
-			iter += 1;
+			classModel.getMethods().put(newSig, methodModel);
+			logger.info("\t\t-> Update sig to " + newSig);
 		}
-		logger.info("Finish collecting all necessary classes and methods using " + (iter - 1) + " iterations");
+		methodModel.setDecl(decl);
+
+		// Build type environment for the method
+		Metrics.Phase phase = metrics.start(Metrics.TYPE_ENV, classModel.getName());
+		methodModel.buildOrUpdateTypeEnv();
+		phase.end();
+
+		phase = metrics.start(Metrics.VISIT, classModel.getName());
+		MethodVisitor methodVisitor = new MethodVisitor(usedClasses);
+		if (methodModel.isConstructor())
+			methodVisitor.visit((ConstructorDeclaration) decl, methodModel);
+		else
+			methodVisitor.visit((MethodDeclaration) decl, methodModel);
+		phase.end();
+		return methodVisitor;
 	}
 
 	public ClassModel getEntryClass() {
 		return entryClass;
 	}
 
+	Map<String, ClassModel> getUsedClasses() {
+		return usedClasses;
+	}
+
+	void setLoopDirectives(LoopDirectives loopDirectives) {
+		this.loopDirectives = loopDirectives;
+	}
+
 	public CppWriter writeCpp() {
 		CppWriter cppWriter = new CppWriter(this.attr);
+		writeCpp(cppWriter);
+		return cppWriter;
+	}
+
+	// Stream the C++ code to <fileName>.h and <fileName>.cpp
+	public void writeCpp(String fileName) throws IOException {
+		try (CppWriter cppWriter = new CppWriter(this.attr, fileName)) {
+			writeCpp(cppWriter);
+		}
+	}
+
+	private void writeCpp(CppWriter cppWriter) {
+		cppWriter.setLoopDirectives(loopDirectives);
+		cppWriter.setArrayLayout(options.getArrayLayout(), options.getArrayPadding());
 		for (String cls : usedClasses.keySet()) {
 			ClassModel classModel = usedClasses.get(cls);
+			Metrics.Phase phase = metrics.start(Metrics.EMIT, cls);
 			cppWriter.writeToHead(classModel.getDecl(), classModel);
+			phase.end();
+			if (options.isBoundedMemory())
+				classModel.release();
 		}
+		Metrics.Phase phase = metrics.start(Metrics.EMIT, entryClass.getName());
 		cppWriter.writeToSource(entryClass.getDecl(), entryClass);
-		return cppWriter;
+		phase.end();
+	}
+
+	// Build the class models concurrently since each of them is independent
+	private void buildClassModelsFromSource(List<ClassModel> classModels, final Map<String, String> classSrcMap,
+			ExecutorService executor) throws IOException, InterruptedException, ParseException {
+
+		List<Future<Void>> futures = new ArrayList<>();
+		for (final ClassModel classModel : classModels) {
+			futures.add(executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					buildClassModelFromSource(classModel, classSrcMap);
+					return null;
+				}
+			}));
+		}
+
+		for (Future<Void> future : futures) {
+			try {
+				future.get();
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException)
+					throw (RuntimeException) cause;
+				else if (cause instanceof IOException)
+					throw (IOException) cause;
+				else if (cause instanceof ParseException)
+					throw (ParseException) cause;
+				throw new RuntimeException(cause);
+			}
+		}
+	}
+
+	// Decompile the class again with the methods which have been added to the model since
+	// it was decompiled in lazy mode, and rebind the built methods to the new declarations.
+	// Return false if there is no new method to decompile.
+	private boolean reloadClassModel(ClassModel classModel, Map<String, String> classSrcMap)
+			throws IOException, InterruptedException, ParseException {
+		Set<String> loaded = loadedMethods.get(classModel.getName());
+		if (loaded == null)
+			return false;
+		Set<String> methodNames = new HashSet<>(loaded);
+		methodNames.addAll(getMethodNames(classModel));
+		if (methodNames.size() == loaded.size())
+			return false;
+
+		logger.info("\t\tDecompiling class " + classModel.getName() + " again for " + methodNames);
+		metrics.increment("lazyReloads");
+		classModel.setTypeEnv(new SymbolTable());
+		buildClassModelFromSource(classModel, classSrcMap, methodNames);
+
+		Metrics.Phase phase = metrics.start(Metrics.TYPE_ENV, classModel.getName());
+		for (MethodModel methodModel : classModel.getMethods().values()) {
+			if (!methodModel.isBuilt())
+				continue;
+			BodyDeclaration decl = classModel.getMethodIndex().get(methodModel.getName());
+			if (decl != null) {
+				methodModel.setDecl(decl);
+				methodModel.buildOrUpdateTypeEnv();
+			}
+		}
+		phase.end();
+		return true;
+	}
+
+	// Return the names of the methods of a class model
+	private static Set<String> getMethodNames(ClassModel classModel) {
+		Set<String> names = new HashSet<>();
+		for (String sig : classModel.getMethods().keySet())
+			names.add(MethodSignature.parse(sig).getName());
+		return names;
 	}
 
 	private void buildClassModelFromSource(ClassModel classModel, Map<String, String> classSrcMap)
 			throws IOException, InterruptedException, ParseException {
+		buildClassModelFromSource(classModel, classSrcMap, options.isLazyDecompile() ? getMethodNames(classModel) : null);
+	}
+
+	// Decompile and parse the class with the given methods (all if null) and build its model
+	private void buildClassModelFromSource(ClassModel classModel, Map<String, String> classSrcMap,
+			Set<String> methodNames) throws IOException, InterruptedException, ParseException {
 
+		Metrics.Phase phase = metrics.start(Metrics.INDEX, classModel.getName());
 		String classFilePath = classSrcMap.get(classModel.getName());
+		phase.end();
 		if (classFilePath == null) {
 			throw new RuntimeException("Cannot find class " + classModel.getName() +
 			" in the provided jar files");
 		}
 
-		String JavaFilePath = Util.decompileClassToJava(classFilePath);
-
-		CompilationUnit cu = Util.parseJavaSource(JavaFilePath);
+		CompilationUnit cu;
+		if (methodNames == null)
+			cu = frontend.load(classFilePath);
+		else {
+			cu = frontend.load(classFilePath, methodNames);
+			loadedMethods.put(classModel.getName(), methodNames);
+		}
 
 		// Setup class declaration
 		ClassOrInterfaceDeclaration classDecl = Util.getClassOrInterfaceDeclarationByName(cu, classModel.getName());
 		assert (classDecl != null);
+		if (options.isBoundedMemory())
+			AstPruner.pruneUnit(cu, classDecl);
 		classModel.setDecl(classDecl);
 
 		// Build type environment for the class
+		phase = metrics.start(Metrics.TYPE_ENV, classModel.getName());
 		classModel.buildOrUpdateTypeEnv();
+		phase.end();
 	}
 }
@@ -0,0 +1,188 @@
+package org.apache.j2ir;
+
+import org.apache.j2ir.utils.FixupReader;
+import org.apache.j2ir.utils.RewriteRule;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+	Options holds the settings of a translation. Each Translator owns a copy of
+	its options and passes them down to the kernel, so translators in one JVM
+	can run with different settings without affecting each other.
+
+	The defaults come from the system properties:
+	- j2ir.threads: number of threads for decompiling and parsing classes (default: number of processors)
+	- j2ir.boundedMemory: bounded memory mode (default: false)
+	- j2ir.lazyDecompile: lazy mode (default: false)
+	- j2ir.loopPolicy: default HLS pragmas of the loops (default: innermost)
+	- j2ir.arrayLayout: layout of the multidimensional arrays (default: row)
+	- j2ir.arrayPadding: padding of the fastest varying array dimension (default: 1)
+	- j2ir.keepWorkDir: keep the scratch directory with the decompiled classes (default: false)
+	- j2ir.metricsReport: write the metrics of the translation to "<output file>.metrics.json" (default: false)
+	- j2ir.cache.dir: directory of the decompile cache (default: none, the classes are not cached)
+	- j2ir.cache.maxSize: decompile cache size cap in MB (default: 512, 0 disables the cache)
+	The rewrite rules of the decompiled code start with the built-in rules of FixupReader.
+ */
+public class Options {
+	// Number of threads for decompiling and parsing classes
+	private int numThreads;
+
+	// Bounded memory mode: drop the comments and the other types of a class after parsing,
+	// empty the unreachable members after the call-graph closure and release each class
+	// after it is written. The kernel can only be written once in this mode.
+	private boolean boundedMemory;
+
+	// Lazy mode: decompile only the methods (and inner classes) of a class which the kernel
+	// reaches and decompile the class again when the closure reaches more of its methods
+	private boolean lazyDecompile;
+
+	// Default HLS pragmas of the loops without directives: "innermost" (pipeline the
+	// innermost loops) or "none". The loop_policy attribute of the kernel XML overrides it.
+	private String loopPolicy;
+
+	// Layout of the rectangular multidimensional arrays: "row" (flattened in row-major order),
+	// "column" (flattened in column-major order) or "none", and the padding of their fastest
+	// varying dimension. The kernel ports are always flattened in row-major order without padding.
+	// The array_layout and array_padding attributes of the kernel XML override them.
+	private String arrayLayout;
+	private int arrayPadding;
+
+	// Keep the scratch directory of the translation, where the source frontend dumps the decompiled classes
+	private boolean keepWorkDir;
+
+	// Write the timing, allocation and counters of the translation to "<output file>.metrics.json"
+	private boolean metricsReport;
+
+	// Directory of the decompile cache, or null to decompile every class, and its size cap in MB
+	private String cacheDir;
+	private long cacheMaxSize;
+
+	// Rewrite rules which fix up the decompiled code for the parser, in order
+	private List<RewriteRule> fixupRules;
+
+	// Read the default options from the system properties
+	public Options() {
+		numThreads = Integer.getInteger("j2ir.threads", Runtime.getRuntime().availableProcessors());
+		boundedMemory = Boolean.getBoolean("j2ir.boundedMemory");
+		lazyDecompile = Boolean.getBoolean("j2ir.lazyDecompile");
+		loopPolicy = System.getProperty("j2ir.loopPolicy", "innermost");
+		arrayLayout = System.getProperty("j2ir.arrayLayout", "row");
+		arrayPadding = Integer.getInteger("j2ir.arrayPadding", 1);
+		keepWorkDir = Boolean.getBoolean("j2ir.keepWorkDir");
+		metricsReport = Boolean.getBoolean("j2ir.metricsReport");
+		cacheDir = System.getProperty("j2ir.cache.dir");
+		cacheMaxSize = Long.getLong("j2ir.cache.maxSize", 512);
+		fixupRules = FixupReader.getDefaultRules();
+	}
+
+	public Options(Options other) {
+		numThreads = other.numThreads;
+		boundedMemory = other.boundedMemory;
+		lazyDecompile = other.lazyDecompile;
+		loopPolicy = other.loopPolicy;
+		arrayLayout = other.arrayLayout;
+		arrayPadding = other.arrayPadding;
+		keepWorkDir = other.keepWorkDir;
+		metricsReport = other.metricsReport;
+		cacheDir = other.cacheDir;
+		cacheMaxSize = other.cacheMaxSize;
+		fixupRules = new ArrayList<>(other.fixupRules);
+	}
+
+	public int getNumThreads() {
+		return numThreads;
+	}
+
+	public void setNumThreads(int numThreads) {
+		if (numThreads < 1)
+			throw new RuntimeException("Invalid number of threads " + numThreads);
+		this.numThreads = numThreads;
+	}
+
+	public boolean isBoundedMemory() {
+		return boundedMemory;
+	}
+
+	public void setBoundedMemory(boolean boundedMemory) {
+		this.boundedMemory = boundedMemory;
+	}
+
+	public boolean isLazyDecompile() {
+		return lazyDecompile;
+	}
+
+	public void setLazyDecompile(boolean lazyDecompile) {
+		this.lazyDecompile = lazyDecompile;
+	}
+
+	public String getLoopPolicy() {
+		return loopPolicy;
+	}
+
+	public void setLoopPolicy(String loopPolicy) {
+		this.loopPolicy = loopPolicy;
+	}
+
+	public String getArrayLayout() {
+		return arrayLayout;
+	}
+
+	public void setArrayLayout(String arrayLayout) {
+		this.arrayLayout = arrayLayout;
+	}
+
+	public int getArrayPadding() {
+		return arrayPadding;
+	}
+
+	public void setArrayPadding(int arrayPadding) {
+		this.arrayPadding = arrayPadding;
+	}
+
+	public boolean isKeepWorkDir() {
+		return keepWorkDir;
+	}
+
+	public void setKeepWorkDir(boolean keepWorkDir) {
+		this.keepWorkDir = keepWorkDir;
+	}
+
+	public boolean isMetricsReport() {
+		return metricsReport;
+	}
+
+	public void setMetricsReport(boolean metricsReport) {
+		this.metricsReport = metricsReport;
+	}
+
+	// Return whether the translations decompile the classes through a cache
+	public boolean isCacheEnabled() {
+		return cacheDir != null && cacheMaxSize > 0;
+	}
+
+	public String getCacheDir() {
+		return cacheDir;
+	}
+
+	public void setCacheDir(String cacheDir) {
+		this.cacheDir = cacheDir;
+	}
+
+	public long getCacheMaxSize() {
+		return cacheMaxSize;
+	}
+
+	public void setCacheMaxSize(long cacheMaxSize) {
+		this.cacheMaxSize = cacheMaxSize;
+	}
+
+	// The list can be changed to add or remove rules of the translations with these options
+	public List<RewriteRule> getFixupRules() {
+		return fixupRules;
+	}
+
+	public void setFixupRules(List<RewriteRule> fixupRules) {
+		this.fixupRules = new ArrayList<>(fixupRules);
+	}
+}
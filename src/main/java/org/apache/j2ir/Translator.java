@@ -0,0 +1,237 @@
+package org.apache.j2ir;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import org.apache.j2ir.frontend.Frontend;
+import org.apache.j2ir.frontend.ParseCache;
+import org.apache.j2ir.frontend.SourceFrontend;
+import org.apache.j2ir.utils.ClassIndex;
+import org.apache.j2ir.utils.DecompileCache;
+import org.apache.j2ir.utils.J2IRLogger;
+import org.apache.j2ir.utils.Metrics;
+import org.apache.j2ir.utils.Util;
+import org.apache.j2ir.writer.LoopDirectives;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.logging.Logger;
+
+/*
+	Translator translates one kernel (jar files, config file, output file).
+	All the state of a translation is kept in the instance and the scratch files
+	are written to a directory of its own, so translators can run concurrently
+	in one JVM and in several processes on one host.
+	The timing and allocation of the translation phases are reported to
+	"<output file>.metrics.json" when the options ask for the report.
+	The settings of the translation are the options given to the translator
+	(by default from the system properties, see Options).
+ */
+public class Translator {
+	final private static Logger logger = (new J2IRLogger()).logger;
+
+	private final String jarFiles;
+	private final String configFile;
+	private final String outputFile;
+
+	private String entryClassName;
+	private String kernelName;
+	private Map<String, Map<String, String>> kernelAttr = new HashMap<>();
+	private Map<String, Map<String, String>> loopAttr = new HashMap<>();
+	private final Options options;
+	private ExecutorService executor = null;
+	private ParseCache parseCache = null;
+	private DecompileCache decompileCache = null;
+	private final Metrics metrics = new Metrics();
+
+	public Translator(String jarFiles, String configFile, String outputFile) {
+		this(jarFiles, configFile, outputFile, new Options());
+	}
+
+	// The options are copied since the kernel config may override some of them
+	public Translator(String jarFiles, String configFile, String outputFile, Options options) {
+		this.jarFiles = jarFiles;
+		this.configFile = configFile;
+		this.outputFile = outputFile;
+		this.options = new Options(options);
+	}
+
+	// Build the classes with a shared executor instead of a pool of the translation
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	// Load the classes through a parse cache shared by the translations
+	public void setParseCache(ParseCache parseCache) {
+		this.parseCache = parseCache;
+	}
+
+	// Decompile the classes through a cache shared by the translations instead of a cache
+	// of the translation (see Options)
+	public void setDecompileCache(DecompileCache decompileCache) {
+		this.decompileCache = decompileCache;
+	}
+
+	public void translate() throws Exception {
+		File workDir = Files.createTempDirectory(new File(Util.tmpDir).toPath(), "j2ir").toFile();
+		try {
+			translate(workDir.getPath());
+		} finally {
+			if (!options.isKeepWorkDir())
+				Util.deleteRecursively(workDir);
+		}
+	}
+
+	private void translate(String workDir) throws Exception {
+		logger.info("Jar files: " + jarFiles);
+		logger.info("Config file: " + configFile);
+		logger.info("Output file: " + outputFile);
+
+		Metrics.Phase phase = metrics.start(Metrics.INDEX, null);
+		ClassIndex classSrcMap = Util.buildClass2SrcMapFromJar(jarFiles);
+		phase.end();
+		try {
+			translate(workDir, classSrcMap);
+		} finally {
+			classSrcMap.close();
+		}
+	}
+
+	private void translate(String workDir, Map<String, String> classSrcMap) throws Exception {
+		parseConfig(configFile);
+		Metrics.Phase phase = metrics.start(Metrics.INDEX, null);
+		String entryClassFilePath = classSrcMap.get(entryClassName);
+		phase.end();
+		if (entryClassFilePath == null) {
+			logger.severe("Available class map:");
+			Util.dumpMap(classSrcMap);
+			throw new RuntimeException("Cannot find the path for entry class " + entryClassName);
+		}
+
+		DecompileCache cache = decompileCache;
+		if (cache == null && options.isCacheEnabled())
+			cache = new DecompileCache(options.getCacheDir(), options.getCacheMaxSize() * 1024 * 1024,
+					DecompileCache.DEFAULT_MEM_ENTRIES);
+
+		// The decompiled classes are only dumped to a working directory which is kept
+		Frontend frontend = new SourceFrontend(options.isKeepWorkDir() ? workDir : null,
+				options.getFixupRules(), cache, metrics);
+		if (parseCache != null)
+			frontend = parseCache.wrap(frontend, options.getFixupRules(), metrics);
+
+		CompilationUnit cu = options.isLazyDecompile() ?
+				frontend.load(entryClassFilePath, Collections.singleton(kernelName)) : frontend.load(entryClassFilePath);
+		MethodDeclaration kernelMethod = Util.getFirstMethodByName(cu, kernelName);
+		if (kernelMethod == null)
+			throw new RuntimeException("Cannot find the kernel method");
+
+		Kernel kernel = new Kernel(kernelMethod, classSrcMap, frontend, kernelAttr, options, metrics, executor);
+		kernel.setLoopDirectives(new LoopDirectives(loopAttr, options.getLoopPolicy()));
+		logger.info("Target: " + kernel.getEntryClass().getName() + "::" + kernelMethod.getName());
+
+		logger.info("Generating output in CPP form");
+		kernel.writeCpp(outputFile);
+		if (options.isMetricsReport())
+			metrics.saveAsFile(outputFile + ".metrics.json");
+
+		if (cache != null)
+			logger.info("Decompile cache: " + metrics.getCounter("decompileCacheHits") + " hits, "
+					+ metrics.getCounter("decompileCacheMisses") + " misses");
+	}
+
+	String getEntryClassName() {
+		return entryClassName;
+	}
+
+	String getKernelName() {
+		return kernelName;
+	}
+
+	Map<String, Map<String, String>> getKernelAttr() {
+		return kernelAttr;
+	}
+
+	// Read the config file without translating the kernel
+	void loadConfig() throws ParserConfigurationException, IOException, SAXException {
+		parseConfig(configFile);
+	}
+
+	private void parseConfig(String filePath) throws ParserConfigurationException, IOException, SAXException {
+		File inputFile = new File(filePath);
+		DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
+		DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
+		Document doc = dBuilder.parse(inputFile);
+		doc.getDocumentElement().normalize();
+		String fullKernelName = doc.getDocumentElement().getAttribute("name");
+		entryClassName = fullKernelName.substring(0, fullKernelName.indexOf('.'));
+		kernelName = fullKernelName.substring(fullKernelName.indexOf('.') + 1, fullKernelName.length());
+
+		if (doc.getDocumentElement().hasAttribute("loop_policy"))
+			options.setLoopPolicy(doc.getDocumentElement().getAttribute("loop_policy"));
+		if (doc.getDocumentElement().hasAttribute("array_layout"))
+			options.setArrayLayout(doc.getDocumentElement().getAttribute("array_layout"));
+		if (doc.getDocumentElement().hasAttribute("array_padding"))
+			options.setArrayPadding(Integer.parseInt(doc.getDocumentElement().getAttribute("array_padding").trim()));
+
+		NodeList nList = doc.getElementsByTagName("variable");
+		for (int i = 0; i < nList.getLength(); i += 1) {
+			Node node = nList.item(i);
+			if (node.getNodeType() != Node.ELEMENT_NODE)
+				continue;
+			Element elt = (Element) node;
+			String varName = getElementText(elt, "name");
+			if (varName == null)
+				throw new RuntimeException("Missing name of a variable in " + filePath);
+			Map<String, String> attrMap = new HashMap<>();
+			for(String attr : Config.kernelAttrList) {
+				String value = getElementText(elt, attr);
+				if (value != null)
+					attrMap.put(attr, value);
+			}
+			kernelAttr.put(varName, attrMap);
+		}
+
+		// <loop><name>Class.method.loop</name><pipeline>II</pipeline><unroll>factor</unroll></loop>
+		// where loop is the loop variable of a decompiled loop of the method
+		nList = doc.getElementsByTagName("loop");
+		for (int i = 0; i < nList.getLength(); i += 1) {
+			Node node = nList.item(i);
+			if (node.getNodeType() != Node.ELEMENT_NODE)
+				continue;
+			Element elt = (Element) node;
+			String loopName = getElementText(elt, "name");
+			if (loopName == null)
+				throw new RuntimeException("Missing name of a loop in " + filePath);
+			if (loopName.split("\\.", -1).length != 3)
+				throw new RuntimeException("Invalid loop name " + loopName + " in " + filePath
+						+ ": expected Class.method.loop");
+			Map<String, String> attrMap = new HashMap<>();
+			for (String attr : new String[] {LoopDirectives.PIPELINE, LoopDirectives.UNROLL}) {
+				String value = getElementText(elt, attr);
+				if (value != null)
+					attrMap.put(attr, value);
+			}
+			loopAttr.put(loopName, attrMap);
+		}
+	}
+
+	// Return the text of the first child element with the tag, or null if there is none
+	private static String getElementText(Element elt, String tag) {
+		NodeList nList = elt.getElementsByTagName(tag);
+		if (nList.getLength() == 0)
+			return null;
+		return nList.item(0).getTextContent().trim();
+	}
+}
\ No newline at end of file
@@ -0,0 +1,19 @@
+package org.apache.j2ir.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// HLS directives of the innermost loops of a method
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.METHOD)
+public @interface Accel_Loop {
+
+	// Initiation interval of the pipelined loop, 0 to not pipeline it
+	public int pipeline() default -1;
+
+	// Unroll factor, 0 to fully unroll the loop and 1 to not unroll it
+	public int unroll() default -1;
+
+}
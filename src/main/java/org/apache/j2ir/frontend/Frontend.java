@@ -0,0 +1,22 @@
+package org.apache.j2ir.frontend;
+
+import com.github.javaparser.ParseException;
+import com.github.javaparser.ast.CompilationUnit;
+
+import java.io.IOException;
+import java.util.Set;
+
+/*
+	Frontend loads the compilation unit of a class from its class file.
+	The class file path is either a file path or "<jar file>:<entry>".
+	A class can also be loaded with only the methods of the given names
+	(and the methods and inner classes they need).
+ */
+public interface Frontend {
+
+	CompilationUnit load(String classFilePath) throws IOException, ParseException, InterruptedException;
+
+	CompilationUnit load(String classFilePath, Set<String> methodNames)
+			throws IOException, ParseException, InterruptedException;
+
+}
@@ -0,0 +1,124 @@
+package org.apache.j2ir.frontend;
+
+import com.github.javaparser.ParseException;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.comments.Comment;
+import org.apache.j2ir.utils.Metrics;
+import org.apache.j2ir.utils.RewriteRule;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/*
+	ParseCache keeps the compilation units of the loaded classes in memory so the
+	translations of a long-running server do not decompile and parse the classes
+	which they share (e.g. the framework classes) again.
+
+	An entry is keyed by the class file path with the size and mtime of the jar (or
+	class) file, the loaded method names and the names of the fixup rules. The cached
+	units are never handed out since a translation may change its units (e.g. the
+	bounded memory mode prunes them): each load gets a copy. The clone of JavaParser drops the orphan comments,
+	so they are copied to the nodes of the clone with the same type and position.
+ */
+public class ParseCache {
+	private final Map<String, CompilationUnit> units;
+
+	public ParseCache(final int maxEntries) {
+		units = new LinkedHashMap<String, CompilationUnit>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CompilationUnit> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	// Return a frontend which loads the classes through the cache. The frontend fixes up
+	// the code with the rules.
+	public Frontend wrap(final Frontend frontend, List<RewriteRule> rules, final Metrics metrics) {
+		final String ruleNames = getRuleNames(rules);
+		return new Frontend() {
+			@Override
+			public CompilationUnit load(String classFilePath) throws IOException, ParseException, InterruptedException {
+				return load(classFilePath, null);
+			}
+
+			@Override
+			public CompilationUnit load(String classFilePath, Set<String> methodNames)
+					throws IOException, ParseException, InterruptedException {
+				String key = getKey(classFilePath, methodNames) + "|" + ruleNames;
+				CompilationUnit cu = get(key);
+				if (cu != null) {
+					metrics.increment("parseCacheHits");
+					return cu;
+				}
+				cu = (methodNames == null) ? frontend.load(classFilePath) : frontend.load(classFilePath, methodNames);
+				put(key, cu);
+				return copy(cu);
+			}
+		};
+	}
+
+	private CompilationUnit get(String key) {
+		CompilationUnit cu;
+		synchronized (units) {
+			cu = units.get(key);
+		}
+		return (cu == null) ? null : copy(cu);
+	}
+
+	private void put(String key, CompilationUnit cu) {
+		synchronized (units) {
+			units.put(key, cu);
+		}
+	}
+
+	private static String getKey(String classFilePath, Set<String> methodNames) {
+		String filePath = classFilePath.contains(":") ?
+				classFilePath.substring(0, classFilePath.lastIndexOf(":")) : classFilePath;
+		File f = new File(filePath).getAbsoluteFile();
+		return classFilePath + "|" + f.length() + "|" + f.lastModified() + "|"
+				+ ((methodNames == null) ? "*" : new TreeSet<>(methodNames).toString());
+	}
+
+	private static String getRuleNames(List<RewriteRule> rules) {
+		StringBuilder sb = new StringBuilder();
+		for (RewriteRule rule : rules)
+			sb.append(rule.getName()).append(",");
+		return sb.toString();
+	}
+
+	private static CompilationUnit copy(CompilationUnit cu) {
+		CompilationUnit clone = (CompilationUnit) cu.clone();
+		copyOrphanComments(cu, clone);
+		return clone;
+	}
+
+	private static void copyOrphanComments(Node from, Node to) {
+		for (Comment comment : from.getOrphanComments())
+			to.addOrphanComment((Comment) comment.clone());
+
+		Map<String, Node> children = new HashMap<>();
+		for (Node child : to.getChildrenNodes()) {
+			if (!(child instanceof Comment))
+				children.put(getPositionKey(child), child);
+		}
+		for (Node child : from.getChildrenNodes()) {
+			if (child instanceof Comment)
+				continue;
+			Node cloned = children.get(getPositionKey(child));
+			if (cloned != null)
+				copyOrphanComments(child, cloned);
+		}
+	}
+
+	private static String getPositionKey(Node n) {
+		return n.getClass().getName() + ":" + n.getBegin() + ":" + n.getEnd();
+	}
+}
@@ -0,0 +1,54 @@
+package org.apache.j2ir.frontend;
+
+import com.github.javaparser.ParseException;
+import com.github.javaparser.ast.CompilationUnit;
+import org.apache.j2ir.utils.DecompileCache;
+import org.apache.j2ir.utils.Metrics;
+import org.apache.j2ir.utils.RewriteRule;
+import org.apache.j2ir.utils.Util;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Set;
+
+/*
+	SourceFrontend decompiles the class and streams the code through the fixup
+	rules into the parser. When a dump directory is given (the working directory
+	of a translation which keeps it), the decompiled code is also written there
+	as a Java file to be inspected; the file is never read back. The decompiled
+	code is reused from the decompile cache if one is given.
+ */
+public class SourceFrontend implements Frontend {
+	private final String dumpDir;
+	private final List<RewriteRule> rules;
+	private final DecompileCache cache;
+	private final Metrics metrics;
+
+	// The dump directory can be null to write no Java files and the cache can be null to
+	// decompile every class. The rules fix up the code (see FixupReader).
+	public SourceFrontend(String dumpDir, List<RewriteRule> rules, DecompileCache cache, Metrics metrics) {
+		this.dumpDir = dumpDir;
+		this.rules = rules;
+		this.cache = cache;
+		this.metrics = metrics;
+	}
+
+	@Override
+	public CompilationUnit load(String classFilePath) throws IOException, ParseException, InterruptedException {
+		return load(classFilePath, null);
+	}
+
+	@Override
+	public CompilationUnit load(String classFilePath, Set<String> methodNames)
+			throws IOException, ParseException, InterruptedException {
+		String javaCode = Util.decompileClass(classFilePath, methodNames, cache, metrics);
+		if (dumpDir != null)
+			Util.dumpJavaCode(classFilePath, javaCode, dumpDir);
+
+		Metrics.Phase phase = metrics.start(Metrics.PARSE, Util.getClassName(classFilePath));
+		CompilationUnit cu = Util.parseDecompiledCode(new StringReader(javaCode), rules, metrics);
+		phase.end();
+		return cu;
+	}
+}
@@ -5,6 +5,7 @@ import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.expr.Expression;
 import com.github.javaparser.ast.type.Type;
 import org.apache.j2ir.utils.Util;
+import org.apache.j2ir.visitor.TypeVisitor;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -17,6 +18,8 @@ public class ClassModel extends Model {
 	private final Map<String, FieldModel> fields = new HashMap<>();
 	private final List<ClassModel> bases =  new ArrayList<>();
 	private MethodModel kernelMethod = null;
+	private MethodIndex methodIndex = null;
+	private TypeVisitor typeVisitor = null;
 
 	public ClassModel(ClassOrInterfaceDeclaration n) {
 		name = n.getName();
@@ -34,12 +37,39 @@ public class ClassModel extends Model {
 
 	public void setDecl(ClassOrInterfaceDeclaration n) {
 		decl = n;
+		methodIndex = null;
+	}
+
+	// Drop the declarations of the class and its methods, which are not used after
+	// the class has been written. The types of the fields refer to the declaration too.
+	@Override
+	public void release() {
+		super.release();
+		methodIndex = null;
+		typeVisitor = null;
+		fields.clear();
+		for (MethodModel method : methods.values())
+			method.release();
 	}
 
 	public ClassOrInterfaceDeclaration getDecl() {
 		return (ClassOrInterfaceDeclaration) decl;
 	}
 
+	// Return the method index of the class declaration, which is built on the first use
+	public MethodIndex getMethodIndex() {
+		if (methodIndex == null)
+			methodIndex = new MethodIndex(getDecl());
+		return methodIndex;
+	}
+
+	// Return the type visitor to infer expression types in the class
+	public TypeVisitor getTypeVisitor() {
+		if (typeVisitor == null)
+			typeVisitor = new TypeVisitor(this);
+		return typeVisitor;
+	}
+
 	public boolean isEntryClass() {
 		return !(kernelMethod == null);
 	}
@@ -53,7 +83,7 @@ public class ClassModel extends Model {
 	}
 
 	public boolean isKernelMethod(MethodDeclaration n) {
-		return kernelMethod != null && kernelMethod.getName().equals(n.getName());
+		return kernelMethod != null && kernelMethod.getDecl() == n;
 	}
 
 	public MethodModel getKernelMethod() {
@@ -90,6 +120,8 @@ public class ClassModel extends Model {
 	}
 
 	public MethodModel addMethod(String sig) {
+		if (methods.containsKey(sig))
+			return methods.get(sig);
 		MethodModel method = new MethodModel(this, sig);
 		methods.put(sig, method);
 		return method;
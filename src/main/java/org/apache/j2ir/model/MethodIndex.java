@@ -0,0 +1,75 @@
+package org.apache.j2ir.model;
+
+import com.github.javaparser.ast.body.BodyDeclaration;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.ConstructorDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+	MethodIndex maps the signatures of the methods and constructors of a class
+	declaration to their declarations. It is built once per declaration.
+	Signatures with "null" parameter types are looked up among the members of
+	the same name and arity, in declaration order.
+ */
+public class MethodIndex {
+	private final Map<MethodSignature, BodyDeclaration> exact = new HashMap<>();
+	private final Map<String, List<Entry>> byNameArity = new HashMap<>();
+
+	public MethodIndex(ClassOrInterfaceDeclaration classDecl) {
+		for (BodyDeclaration member : classDecl.getMembers()) {
+			if (!(member instanceof MethodDeclaration || member instanceof ConstructorDeclaration))
+				continue;
+			MethodSignature sig = MethodSignature.of(member);
+
+			// The first declaration wins as in a scan of the members
+			if (!exact.containsKey(sig))
+				exact.put(sig, member);
+
+			String key = getBucketKey(sig);
+			List<Entry> bucket = byNameArity.get(key);
+			if (bucket == null) {
+				bucket = new ArrayList<>();
+				byNameArity.put(key, bucket);
+			}
+			bucket.add(new Entry(sig, member));
+		}
+	}
+
+	// Return the declaration of the signature, or null if the class has no such method
+	public BodyDeclaration get(MethodSignature sig) {
+		if (!sig.hasWildcard())
+			return exact.get(sig);
+
+		List<Entry> bucket = byNameArity.get(getBucketKey(sig));
+		if (bucket != null) {
+			for (Entry e : bucket) {
+				if (e.sig.matches(sig))
+					return e.decl;
+			}
+		}
+		return null;
+	}
+
+	public BodyDeclaration get(String sig) {
+		return get(MethodSignature.parse(sig));
+	}
+
+	private static String getBucketKey(MethodSignature sig) {
+		return sig.getName() + "/" + sig.getArity();
+	}
+
+	private static class Entry {
+		final MethodSignature sig;
+		final BodyDeclaration decl;
+
+		Entry(MethodSignature sig, BodyDeclaration decl) {
+			this.sig = sig;
+			this.decl = decl;
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package org.apache.j2ir.model;
 
+import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.body.BodyDeclaration;
 import com.github.javaparser.ast.body.ConstructorDeclaration;
 import com.github.javaparser.ast.body.MethodDeclaration;
@@ -7,7 +8,9 @@ import com.github.javaparser.ast.body.Parameter;
 import org.apache.j2ir.visitor.TypeEnvBuilder;
 
 import java.lang.reflect.Constructor;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 public class MethodModel extends Model {
 	private final String name;
@@ -15,6 +18,9 @@ public class MethodModel extends Model {
 	private boolean iskernel = false;
 	private boolean isconstructor = false;
 
+	// Scopes of the blocks, loops and catch clauses of the method by node
+	private Map<Node, SymbolTable> scopes = Collections.emptyMap();
+
 	public MethodModel(ClassModel m, String n) {
 		name = n;
 		decl = null;
@@ -49,13 +55,34 @@ public class MethodModel extends Model {
 		return decl;
 	}
 
+	// The method scope is pushed over the class scope, so the symbols
+	// of the method are not visible in the class or in the other methods
 	@Override
 	public void buildOrUpdateTypeEnv() {
-		setTypeEnv(classModel.getTypeEnv());
-		new TypeEnvBuilder(getDecl()).build(getTypeEnv());
+		setTypeEnv(classModel.getTypeEnv().push());
+		TypeEnvBuilder builder = new TypeEnvBuilder(getDecl());
+		builder.build(getTypeEnv());
+		scopes = builder.getScopes();
 		return;
 	}
 
+	// Return the scope of the innermost block, loop or catch clause enclosing the node,
+	// or the method scope if there is none
+	public SymbolTable getTypeEnv(Node n) {
+		for (Node p = n; p != null && p != decl; p = p.getParentNode()) {
+			SymbolTable scope = scopes.get(p);
+			if (scope != null)
+				return scope;
+		}
+		return getTypeEnv();
+	}
+
+	@Override
+	public void release() {
+		super.release();
+		scopes = Collections.emptyMap();
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
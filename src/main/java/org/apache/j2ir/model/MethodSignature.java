@@ -0,0 +1,119 @@
+package org.apache.j2ir.model;
+
+import com.github.javaparser.ast.body.BodyDeclaration;
+import com.github.javaparser.ast.body.ConstructorDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.Parameter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/*
+	MethodSignature is a method (or constructor) name with its parameter types.
+	The textual form joins them with '-' (e.g. "calc-int-double") as the
+	method names of the models. A parameter type "null" comes from a null
+	argument of a method call and matches any type.
+ */
+public class MethodSignature {
+	final public static String WILDCARD = "null";
+
+	private final String name;
+	private final List<String> paramTypes;
+	private final boolean hasWildcard;
+	private final int hash;
+
+	public MethodSignature(String name, List<String> paramTypes) {
+		this.name = name;
+		this.paramTypes = Collections.unmodifiableList(new ArrayList<>(paramTypes));
+		this.hasWildcard = paramTypes.contains(WILDCARD);
+		this.hash = name.hashCode() * 31 + paramTypes.hashCode();
+	}
+
+	public static MethodSignature of(BodyDeclaration n) {
+		String name;
+		List<Parameter> params;
+		if (n instanceof MethodDeclaration) {
+			name = ((MethodDeclaration) n).getName();
+			params = ((MethodDeclaration) n).getParameters();
+		}
+		else if (n instanceof ConstructorDeclaration) {
+			name = ((ConstructorDeclaration) n).getName();
+			params = ((ConstructorDeclaration) n).getParameters();
+		}
+		else
+			throw new RuntimeException("Not a method or constructor declaration: " + n);
+
+		List<String> paramTypes = new ArrayList<>();
+		if (params != null) {
+			for (Parameter p : params)
+				paramTypes.add(p.getType().toString());
+		}
+		return new MethodSignature(name, paramTypes);
+	}
+
+	// Parse the textual form of a signature
+	public static MethodSignature parse(String sig) {
+		List<String> parts = new ArrayList<>();
+		int start = 0;
+		int end;
+		while ((end = sig.indexOf('-', start)) >= 0) {
+			parts.add(sig.substring(start, end));
+			start = end + 1;
+		}
+		parts.add(sig.substring(start));
+		return new MethodSignature(parts.get(0), parts.subList(1, parts.size()));
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public List<String> getParamTypes() {
+		return paramTypes;
+	}
+
+	public int getArity() {
+		return paramTypes.size();
+	}
+
+	public boolean hasWildcard() {
+		return hasWildcard;
+	}
+
+	// Return true if the signatures are the same, where "null" matches any type
+	public boolean matches(MethodSignature other) {
+		if (!name.equals(other.name) || paramTypes.size() != other.paramTypes.size())
+			return false;
+		for (int i = 0; i < paramTypes.size(); i += 1) {
+			String t1 = paramTypes.get(i);
+			String t2 = other.paramTypes.get(i);
+			if (!t1.equals(t2) && !t1.equals(WILDCARD) && !t2.equals(WILDCARD))
+				return false;
+		}
+		return true;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o)
+			return true;
+		if (!(o instanceof MethodSignature))
+			return false;
+		MethodSignature other = (MethodSignature) o;
+		return hash == other.hash && name.equals(other.name) && paramTypes.equals(other.paramTypes);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(name);
+		for (String t : paramTypes)
+			sb.append('-').append(t);
+		return sb.toString();
+	}
+}
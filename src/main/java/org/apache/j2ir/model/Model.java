@@ -4,11 +4,10 @@ import com.github.javaparser.ast.body.BodyDeclaration;
 import com.github.javaparser.ast.type.Type;
 import org.apache.j2ir.visitor.TypeEnvBuilder;
 
-import java.util.HashMap;
 import java.util.Map;
 
 public abstract class Model {
-	private Map<String, Type> typeEnv = new HashMap<String, Type>();
+	private SymbolTable typeEnv = new SymbolTable();
 	protected BodyDeclaration decl;
 
 	public boolean isBuilt() {
@@ -17,11 +16,11 @@ public abstract class Model {
 		return true;
 	}
 
-	public void setTypeEnv(Map<String, Type> n) {
+	public void setTypeEnv(SymbolTable n) {
 		typeEnv = n;
 	}
 
-	public Map<String, Type> getTypeEnv() {
+	public SymbolTable getTypeEnv() {
 		return typeEnv;
 	}
 
@@ -31,6 +30,12 @@ public abstract class Model {
 		return;
 	}
 
+	// Drop the declaration and the type environment once the model has been written
+	public void release() {
+		decl = null;
+		typeEnv = new SymbolTable();
+	}
+
 	public void dumpTypeEnv() {
 		System.out.println("Type env.");
 		for (String var : typeEnv.keySet())
@@ -0,0 +1,190 @@
+package org.apache.j2ir.model;
+
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.type.Type;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/*
+	SymbolTable is a lexically scoped type environment (variable name -> type).
+	A scope only stores its own symbols and looks up the others in the enclosing
+	scopes, so a method scope is pushed over the class scope (the fields) without
+	copying, and the symbols of a method never leak into the class or into other
+	methods. The blocks, loops and catch clauses of a method push their own scopes
+	in the same way (see TypeEnvBuilder). Scopes which share a parent can be built
+	independently, and no scope is copied: the size and the entries walk the chain.
+
+	Each scope also caches the inferred types of expressions, keyed by the identity
+	of the expression nodes. The cache is dropped when the scope or any enclosing
+	scope changes. The entry set is read-only so every change goes through put/remove/clear.
+ */
+public class SymbolTable extends AbstractMap<String, Type> {
+	private final SymbolTable parent;
+	private final Map<String, Type> symbols = new HashMap<>();
+	private final Map<Expression, Type> typeCache = new IdentityHashMap<>();
+
+	// Number of changes of this scope, and of this and the enclosing scopes when the cache was filled
+	private long modCount = 0;
+	private long cacheVersion = 0;
+
+	public SymbolTable() {
+		this(null);
+	}
+
+	private SymbolTable(SymbolTable parent) {
+		this.parent = parent;
+	}
+
+	// Return a new scope enclosed by this scope
+	public SymbolTable push() {
+		return new SymbolTable(this);
+	}
+
+	// Return the enclosing scope
+	public SymbolTable pop() {
+		return parent;
+	}
+
+	public SymbolTable getParent() {
+		return parent;
+	}
+
+	// Return the types inferred in this scope, valid for the current symbols
+	public Map<Expression, Type> getTypeCache() {
+		long version = getVersion();
+		if (cacheVersion != version) {
+			typeCache.clear();
+			cacheVersion = version;
+		}
+		return typeCache;
+	}
+
+	private long getVersion() {
+		long version = 0;
+		for (SymbolTable t = this; t != null; t = t.parent)
+			version += t.modCount;
+		return version;
+	}
+
+	// Return true if the symbol is declared in this scope (not in the enclosing scopes)
+	public boolean containsLocal(String name) {
+		return symbols.containsKey(name);
+	}
+
+	@Override
+	public Type get(Object name) {
+		for (SymbolTable t = this; t != null; t = t.parent) {
+			Type type = t.symbols.get(name);
+			if (type != null || t.symbols.containsKey(name))
+				return type;
+		}
+		return null;
+	}
+
+	@Override
+	public boolean containsKey(Object name) {
+		for (SymbolTable t = this; t != null; t = t.parent) {
+			if (t.symbols.containsKey(name))
+				return true;
+		}
+		return false;
+	}
+
+	// Declare a symbol in this scope
+	@Override
+	public Type put(String name, Type type) {
+		modCount += 1;
+		return symbols.put(name, type);
+	}
+
+	// Remove a symbol from this scope
+	@Override
+	public Type remove(Object name) {
+		modCount += 1;
+		return symbols.remove(name);
+	}
+
+	// Remove the symbols of this scope
+	@Override
+	public void clear() {
+		modCount += 1;
+		symbols.clear();
+	}
+
+	@Override
+	public int size() {
+		int size = 0;
+		for (SymbolTable t = this; t != null; t = t.parent) {
+			for (String name : t.symbols.keySet()) {
+				if (!isShadowed(name, t))
+					size += 1;
+			}
+		}
+		return size;
+	}
+
+	// The visible symbols, where the inner scopes shadow the enclosing ones.
+	// The entries are read from the scopes as they are iterated.
+	@Override
+	public Set<Entry<String, Type>> entrySet() {
+		return new AbstractSet<Entry<String, Type>>() {
+			@Override
+			public Iterator<Entry<String, Type>> iterator() {
+				return new ScopeIterator();
+			}
+
+			@Override
+			public int size() {
+				return SymbolTable.this.size();
+			}
+		};
+	}
+
+	// Check if a symbol of an enclosing scope is declared again in a scope inside it
+	private boolean isShadowed(String name, SymbolTable scope) {
+		for (SymbolTable t = this; t != scope; t = t.parent) {
+			if (t.symbols.containsKey(name))
+				return true;
+		}
+		return false;
+	}
+
+	// Iterate the symbols from the innermost scope out, skipping the shadowed ones
+	private class ScopeIterator implements Iterator<Entry<String, Type>> {
+		private SymbolTable scope = SymbolTable.this;
+		private Iterator<Entry<String, Type>> it = symbols.entrySet().iterator();
+		private Entry<String, Type> next = null;
+
+		@Override
+		public boolean hasNext() {
+			while (next == null && scope != null) {
+				if (!it.hasNext()) {
+					scope = scope.parent;
+					if (scope != null)
+						it = scope.symbols.entrySet().iterator();
+					continue;
+				}
+				Entry<String, Type> e = it.next();
+				if (!isShadowed(e.getKey(), scope))
+					next = new SimpleImmutableEntry<>(e);
+			}
+			return next != null;
+		}
+
+		@Override
+		public Entry<String, Type> next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			Entry<String, Type> e = next;
+			next = null;
+			return e;
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package org.apache.j2ir.utils;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.BodyDeclaration;
+import com.github.javaparser.ast.body.ConstructorDeclaration;
+import com.github.javaparser.ast.body.FieldDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.ast.comments.Comment;
+import com.github.javaparser.ast.stmt.BlockStmt;
+import org.apache.j2ir.model.ClassModel;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/*
+	AstPruner drops the parts of the parsed classes that are never written,
+	so the translation does not keep whole decompiled classes in memory.
+
+	A node replaced by a setter stays in the children of its parent in JavaParser,
+	so the replaced nodes are removed from the children explicitly.
+ */
+public class AstPruner {
+
+	// Keep only the given type of the compilation unit and drop all the comments
+	public static void pruneUnit(CompilationUnit cu, TypeDeclaration keep) {
+		for (Iterator<TypeDeclaration> i = cu.getTypes().iterator(); i.hasNext(); ) {
+			TypeDeclaration type = i.next();
+			if (type != keep) {
+				i.remove();
+				detach(type);
+			}
+		}
+		stripComments(cu);
+	}
+
+	public static void stripComments(Node root) {
+		List<Node> nodes = new ArrayList<>();
+		nodes.add(root);
+		while (!nodes.isEmpty()) {
+			Node n = nodes.remove(nodes.size() - 1);
+			if (n instanceof Comment)
+				continue;
+			n.setComment(null);
+			n.getOrphanComments().clear();
+			for (Iterator<Node> i = n.getChildrenNodes().iterator(); i.hasNext(); ) {
+				Node child = i.next();
+				if (child instanceof Comment)
+					i.remove();
+				else
+					nodes.add(child);
+			}
+		}
+	}
+
+	// Empty the members which are not written for the class: methods and constructors
+	// that are not reachable from the kernel and initializers of unused fields.
+	// The declarations are kept so that the layout of the written class does not change.
+	public static void pruneUnreachable(ClassModel classModel) {
+		if (classModel.getDecl() == null)
+			return;
+		for (BodyDeclaration member : classModel.getDecl().getMembers()) {
+			if (member instanceof MethodDeclaration) {
+				MethodDeclaration m = (MethodDeclaration) member;
+				if (classModel.hasMethod(Util.getMethodSig(m)) || m.getBody() == null)
+					continue;
+				BlockStmt body = m.getBody();
+				m.setBody(null);
+				detach(body);
+			} else if (member instanceof ConstructorDeclaration) {
+				ConstructorDeclaration c = (ConstructorDeclaration) member;
+				if (classModel.hasMethod(Util.getMethodSig(c)) || c.getBlock() == null)
+					continue;
+				BlockStmt block = c.getBlock();
+				c.setBlock(new BlockStmt());
+				detach(block);
+			} else if (member instanceof FieldDeclaration && !classModel.isEntryClass()) {
+				for (VariableDeclarator var : ((FieldDeclaration) member).getVariables()) {
+					if (classModel.hasField(var.getId().getName()) || var.getInit() == null)
+						continue;
+					Node init = var.getInit();
+					var.setInit(null);
+					detach(init);
+				}
+			}
+		}
+	}
+
+	// Remove a node from the children of its parent. Node.setParentNode is not used
+	// since it removes the first child which is structurally equal to the node.
+	private static void detach(Node n) {
+		Node parent = n.getParentNode();
+		if (parent == null)
+			return;
+		for (Iterator<Node> i = parent.getChildrenNodes().iterator(); i.hasNext(); ) {
+			if (i.next() == n) {
+				i.remove();
+				break;
+			}
+		}
+	}
+}
@@ -0,0 +1,470 @@
+package org.apache.j2ir.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+	ClassFilePruner removes the methods that are not needed from a class file
+	and drops the inner classes that the kept code does not refer to, so the
+	decompiler only decompiles the code the kernel can reach.
+
+	The kept methods are the requested ones, constructors, static initializers,
+	synthetic methods and the methods of the class they call (directly or through
+	invokedynamic, e.g. lambdas), transitively. An inner class is kept if it is
+	referenced by the kept methods or by another kept inner class. Kept inner
+	classes are not pruned and the methods of the outer class they call are kept.
+
+	Fernflower decompiles whole classes, so a method is decompiled on its own by
+	handing a class file with fewer methods to it. Only the method table is
+	rewritten; the constant pool and the other parts of the class are unchanged.
+ */
+public class ClassFilePruner {
+	final private static int ACC_SYNTHETIC = 0x1000;
+	final private static Pattern TYPE_PATTERN = Pattern.compile("L([^;<>\\[]+)[;<]");
+
+	final private static int CONSTANT_Utf8 = 1;
+	final private static int CONSTANT_Long = 5;
+	final private static int CONSTANT_Double = 6;
+	final private static int CONSTANT_Class = 7;
+	final private static int CONSTANT_Fieldref = 9;
+	final private static int CONSTANT_Methodref = 10;
+	final private static int CONSTANT_InterfaceMethodref = 11;
+	final private static int CONSTANT_NameAndType = 12;
+	final private static int CONSTANT_MethodHandle = 15;
+	final private static int CONSTANT_MethodType = 16;
+	final private static int CONSTANT_InvokeDynamic = 18;
+
+	private final Map<String, byte[]> classes;
+	private final String mainEntry;
+	private int numPrunedMethods = 0;
+	private int numPrunedClasses = 0;
+
+	// The class files are keyed by their entry names; mainEntry is the outer class
+	public ClassFilePruner(String mainEntry, Map<String, byte[]> classes) {
+		this.mainEntry = mainEntry;
+		this.classes = classes;
+	}
+
+	public int getNumPrunedMethods() {
+		return numPrunedMethods;
+	}
+
+	public int getNumPrunedClasses() {
+		return numPrunedClasses;
+	}
+
+	// Return the class files with the methods of the given names (and what they need)
+	public Map<String, byte[]> prune(Set<String> methodNames) {
+		ClassFile main = new ClassFile(classes.get(mainEntry));
+
+		Map<String, String> innerEntries = new HashMap<>();
+		Map<String, ClassFile> innerClasses = new HashMap<>();
+		for (String entry : classes.keySet()) {
+			if (entry.equals(mainEntry))
+				continue;
+			ClassFile inner = new ClassFile(classes.get(entry));
+			innerEntries.put(inner.thisClass, entry);
+			innerClasses.put(inner.thisClass, inner);
+		}
+
+		Set<String> keptMethods = new HashSet<>(methodNames);
+		Set<String> keptClasses = new HashSet<>();
+		Deque<MethodInfo> methodWorklist = new ArrayDeque<>();
+		Deque<ClassFile> classWorklist = new ArrayDeque<>();
+		boolean[] kept = new boolean[main.methods.size()];
+
+		for (String desc : main.fieldDescriptors)
+			keepClasses(getTypeNames(desc), innerClasses, keptClasses, classWorklist);
+
+		boolean changed = true;
+		while (changed) {
+			for (int i = 0; i < main.methods.size(); i += 1) {
+				MethodInfo m = main.methods.get(i);
+				if (!kept[i] && (keptMethods.contains(m.name) || m.name.equals("<init>")
+						|| m.name.equals("<clinit>") || (m.access & ACC_SYNTHETIC) != 0)) {
+					kept[i] = true;
+					methodWorklist.add(m);
+				}
+			}
+			changed = false;
+
+			// Methods of the class and inner classes referred to by the kept methods
+			while (!methodWorklist.isEmpty()) {
+				MethodInfo m = methodWorklist.poll();
+				Set<String> refs = new HashSet<>(getTypeNames(m.descriptor));
+				for (int index : main.getCodeReferences(m))
+					collectReferences(main, index, keptMethods, refs);
+				keepClasses(refs, innerClasses, keptClasses, classWorklist);
+				changed = true;
+			}
+
+			// Methods of the outer class referred to by the kept inner classes
+			while (!classWorklist.isEmpty()) {
+				ClassFile inner = classWorklist.poll();
+				Set<String> refs = new HashSet<>();
+				for (int index = 1; index < inner.cpOffsets.length; index += 1) {
+					if (inner.cpOffsets[index] == 0)
+						continue;
+					int tag = inner.tag(index);
+					if (tag == CONSTANT_Class)
+						refs.addAll(getClassNames(inner.className(index)));
+					else if (tag == CONSTANT_Utf8)
+						refs.addAll(getTypeNames(inner.utf8(index)));
+					else if ((tag == CONSTANT_Methodref || tag == CONSTANT_InterfaceMethodref)
+							&& inner.refOwner(index).equals(main.thisClass))
+						keptMethods.add(inner.refName(index));
+				}
+				keepClasses(refs, innerClasses, keptClasses, classWorklist);
+				changed = true;
+			}
+		}
+
+		Map<String, byte[]> result = new HashMap<>();
+		result.put(mainEntry, main.withMethods(kept));
+		for (String name : keptClasses)
+			result.put(innerEntries.get(name), classes.get(innerEntries.get(name)));
+
+		for (boolean k : kept) {
+			if (!k)
+				numPrunedMethods += 1;
+		}
+		numPrunedClasses = innerClasses.size() - keptClasses.size();
+		return result;
+	}
+
+	private static void keepClasses(Set<String> names, Map<String, ClassFile> innerClasses,
+			Set<String> keptClasses, Deque<ClassFile> classWorklist) {
+		for (String name : names) {
+			ClassFile inner = innerClasses.get(name);
+			if (inner != null && keptClasses.add(name))
+				classWorklist.add(inner);
+		}
+	}
+
+	// Collect the methods of the class and the classes referred to by a constant
+	private static void collectReferences(ClassFile cf, int index, Set<String> keptMethods, Set<String> refs) {
+		switch (cf.tag(index)) {
+			case CONSTANT_Class:
+				refs.addAll(getClassNames(cf.className(index)));
+				break;
+			case CONSTANT_Fieldref:
+				refs.add(cf.refOwner(index));
+				refs.addAll(getTypeNames(cf.refDescriptor(index)));
+				break;
+			case CONSTANT_Methodref:
+			case CONSTANT_InterfaceMethodref:
+				String owner = cf.refOwner(index);
+				if (owner.equals(cf.thisClass))
+					keptMethods.add(cf.refName(index));
+				refs.add(owner);
+				refs.addAll(getTypeNames(cf.refDescriptor(index)));
+				break;
+			case CONSTANT_MethodHandle:
+				collectReferences(cf, cf.u2(cf.cpOffsets[index] + 2), keptMethods, refs);
+				break;
+			case CONSTANT_MethodType:
+				refs.addAll(getTypeNames(cf.utf8(cf.u2(cf.cpOffsets[index] + 1))));
+				break;
+			case CONSTANT_InvokeDynamic:
+				int nameAndType = cf.u2(cf.cpOffsets[index] + 3);
+				refs.addAll(getTypeNames(cf.utf8(cf.u2(cf.cpOffsets[nameAndType] + 3))));
+				for (int arg : cf.bootstrapArguments.get(cf.u2(cf.cpOffsets[index] + 1)))
+					collectReferences(cf, arg, keptMethods, refs);
+				break;
+			default:
+		}
+	}
+
+	private static class MethodInfo {
+		int start;
+		int end;
+		int access;
+		String name;
+		String descriptor;
+		int codeStart = -1; // Offset of the bytecode in the Code attribute
+		int codeLength = 0;
+	}
+
+	// The parts of a class file needed to prune it
+	private static class ClassFile {
+		final byte[] bytes;
+		final int[] cpOffsets;
+		final String thisClass;
+		final List<String> fieldDescriptors = new ArrayList<>();
+		final List<MethodInfo> methods = new ArrayList<>();
+		final List<int[]> bootstrapArguments = new ArrayList<>();
+		final int methodsCountOffset;
+		final int methodsEnd;
+
+		ClassFile(byte[] bytes) {
+			this.bytes = bytes;
+			if (u2(0) != 0xCAFE || u2(2) != 0xBABE)
+				throw new RuntimeException("Not a class file");
+
+			int count = u2(8);
+			cpOffsets = new int[count];
+			int p = 10;
+			for (int i = 1; i < count; i += 1) {
+				cpOffsets[i] = p;
+				int tag = bytes[p] & 0xff;
+				switch (tag) {
+					case CONSTANT_Utf8:
+						p += 3 + u2(p + 1);
+						break;
+					case CONSTANT_Long:
+					case CONSTANT_Double:
+						p += 9;
+						i += 1;
+						break;
+					case CONSTANT_MethodHandle:
+						p += 4;
+						break;
+					case CONSTANT_Class:
+					case 8: // String
+					case CONSTANT_MethodType:
+					case 19: // Module
+					case 20: // Package
+						p += 3;
+						break;
+					case 3: // Integer
+					case 4: // Float
+					case CONSTANT_Fieldref:
+					case CONSTANT_Methodref:
+					case CONSTANT_InterfaceMethodref:
+					case CONSTANT_NameAndType:
+					case 17: // Dynamic
+					case CONSTANT_InvokeDynamic:
+						p += 5;
+						break;
+					default:
+						throw new RuntimeException("Unknown constant pool tag " + tag);
+				}
+			}
+
+			thisClass = className(u2(p + 2));
+			p += 6;
+			p += 2 + 2 * u2(p);
+
+			// Fields
+			int numFields = u2(p);
+			p += 2;
+			for (int i = 0; i < numFields; i += 1) {
+				fieldDescriptors.add(utf8(u2(p + 4)));
+				p = skipAttributes(p + 6);
+			}
+
+			// Methods
+			methodsCountOffset = p;
+			int numMethods = u2(p);
+			p += 2;
+			for (int i = 0; i < numMethods; i += 1) {
+				MethodInfo m = new MethodInfo();
+				m.start = p;
+				m.access = u2(p);
+				m.name = utf8(u2(p + 2));
+				m.descriptor = utf8(u2(p + 4));
+				int numAttrs = u2(p + 6);
+				p += 8;
+				for (int j = 0; j < numAttrs; j += 1) {
+					int length = u4(p + 2);
+					if (utf8(u2(p)).equals("Code")) {
+						m.codeLength = u4(p + 10);
+						m.codeStart = p + 14;
+					}
+					p += 6 + length;
+				}
+				m.end = p;
+				methods.add(m);
+			}
+			methodsEnd = p;
+
+			// Class attributes
+			int numAttrs = u2(p);
+			p += 2;
+			for (int i = 0; i < numAttrs; i += 1) {
+				int length = u4(p + 2);
+				if (utf8(u2(p)).equals("BootstrapMethods")) {
+					int numMethods2 = u2(p + 6);
+					int q = p + 8;
+					for (int j = 0; j < numMethods2; j += 1) {
+						int numArgs = u2(q + 2);
+						int[] args = new int[numArgs + 1];
+						args[0] = u2(q);
+						for (int k = 0; k < numArgs; k += 1)
+							args[k + 1] = u2(q + 4 + 2 * k);
+						bootstrapArguments.add(args);
+						q += 4 + 2 * numArgs;
+					}
+				}
+				p += 6 + length;
+			}
+		}
+
+		private int skipAttributes(int p) {
+			int numAttrs = u2(p);
+			p += 2;
+			for (int i = 0; i < numAttrs; i += 1)
+				p += 6 + u4(p + 2);
+			return p;
+		}
+
+		// Return the constant pool indexes used by the instructions of a method
+		List<Integer> getCodeReferences(MethodInfo m) {
+			List<Integer> refs = new ArrayList<>();
+			if (m.codeStart < 0)
+				return refs;
+			int pc = 0;
+			while (pc < m.codeLength) {
+				int p = m.codeStart + pc;
+				int opcode = bytes[p] & 0xff;
+				switch (opcode) {
+					case 0x12: // ldc
+						refs.add(bytes[p + 1] & 0xff);
+						pc += 2;
+						break;
+					case 0x13: // ldc_w
+					case 0x14: // ldc2_w
+					case 0xb2: // getstatic
+					case 0xb3: // putstatic
+					case 0xb4: // getfield
+					case 0xb5: // putfield
+					case 0xb6: // invokevirtual
+					case 0xb7: // invokespecial
+					case 0xb8: // invokestatic
+					case 0xbb: // new
+					case 0xbd: // anewarray
+					case 0xc0: // checkcast
+					case 0xc1: // instanceof
+						refs.add(u2(p + 1));
+						pc += 3;
+						break;
+					case 0xb9: // invokeinterface
+					case 0xba: // invokedynamic
+						refs.add(u2(p + 1));
+						pc += 5;
+						break;
+					case 0xc5: // multianewarray
+						refs.add(u2(p + 1));
+						pc += 4;
+						break;
+					case 0xaa: { // tableswitch
+						int q = pc + 1 + ((4 - (pc + 1) % 4) % 4);
+						int low = u4(m.codeStart + q + 4);
+						int high = u4(m.codeStart + q + 8);
+						pc = q + 12 + 4 * (high - low + 1);
+						break;
+					}
+					case 0xab: { // lookupswitch
+						int q = pc + 1 + ((4 - (pc + 1) % 4) % 4);
+						int numPairs = u4(m.codeStart + q + 4);
+						pc = q + 8 + 8 * numPairs;
+						break;
+					}
+					case 0xc4: // wide
+						pc += ((bytes[p + 1] & 0xff) == 0x84) ? 6 : 4;
+						break;
+					default:
+						pc += getInstructionLength(opcode);
+				}
+			}
+			return refs;
+		}
+
+		// Return the class file with the kept methods only
+		byte[] withMethods(boolean[] kept) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length);
+			out.write(bytes, 0, methodsCountOffset);
+			int count = 0;
+			for (boolean k : kept) {
+				if (k)
+					count += 1;
+			}
+			out.write(count >> 8);
+			out.write(count);
+			for (int i = 0; i < methods.size(); i += 1) {
+				if (kept[i])
+					out.write(bytes, methods.get(i).start, methods.get(i).end - methods.get(i).start);
+			}
+			out.write(bytes, methodsEnd, bytes.length - methodsEnd);
+			return out.toByteArray();
+		}
+
+		int tag(int index) {
+			return bytes[cpOffsets[index]] & 0xff;
+		}
+
+		String utf8(int index) {
+			int p = cpOffsets[index];
+			return decodeUtf8(bytes, p + 3, u2(p + 1));
+		}
+
+		String className(int index) {
+			return utf8(u2(cpOffsets[index] + 1));
+		}
+
+		String refOwner(int index) {
+			return className(u2(cpOffsets[index] + 1));
+		}
+
+		String refName(int index) {
+			return utf8(u2(cpOffsets[u2(cpOffsets[index] + 3)] + 1));
+		}
+
+		String refDescriptor(int index) {
+			return utf8(u2(cpOffsets[u2(cpOffsets[index] + 3)] + 3));
+		}
+
+		int u2(int p) {
+			return ((bytes[p] & 0xff) << 8) | (bytes[p + 1] & 0xff);
+		}
+
+		int u4(int p) {
+			return (u2(p) << 16) | u2(p + 2);
+		}
+	}
+
+	// Return the class names of a Class constant, which is a class name or an array descriptor
+	private static Set<String> getClassNames(String name) {
+		if (name.startsWith("["))
+			return getTypeNames(name);
+		return Collections.singleton(name);
+	}
+
+	// Return the class names in a descriptor or a signature
+	private static Set<String> getTypeNames(String descriptor) {
+		Set<String> names = new HashSet<>();
+		Matcher m = TYPE_PATTERN.matcher(descriptor);
+		while (m.find())
+			names.add(m.group(1));
+		return names;
+	}
+
+	// Length of the instructions with a fixed length
+	private static int getInstructionLength(int opcode) {
+		if (opcode == 0x10 || opcode == 0xbc || opcode == 0xa9 // bipush, newarray, ret
+				|| (opcode >= 0x15 && opcode <= 0x19) || (opcode >= 0x36 && opcode <= 0x3a)) // loads, stores
+			return 2;
+		if (opcode == 0x11 || opcode == 0x84 || (opcode >= 0x99 && opcode <= 0xa8) // sipush, iinc, branches
+				|| opcode == 0xc6 || opcode == 0xc7) // ifnull, ifnonnull
+			return 3;
+		if (opcode == 0xc8 || opcode == 0xc9) // goto_w, jsr_w
+			return 5;
+		return 1;
+	}
+
+	// Decode the modified UTF-8 of class files (enough for the names and descriptors)
+	private static String decodeUtf8(byte[] bytes, int offset, int length) {
+		return new String(bytes, offset, length, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,247 @@
+package org.apache.j2ir.utils;
+
+import java.io.*;
+import java.util.*;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/*
+	ClassIndex maps class names to their class files ("<jar>:<entry>") in a set of jar files.
+	Class lookups go to the jar directories on demand (ZipFile.getEntry), so a run
+	does not enumerate the jars. The sorted list of class entries of a jar is only needed to
+	enumerate the classes (e.g. inner classes), so it is built on first use and kept in
+	memory with the opened jar file, which is reopened when the jar size or mtime changes.
+
+	The opened jar files are shared by all the indices of the JVM and reference counted:
+	an index holds its jar files until it is closed, and a reader opens a jar file with
+	openJar and closes the handle when it is done. A stale jar file is closed when its
+	last handle is closed, and at most MAX_IDLE_JARS jar files without handles are kept
+	open (least recently used first out) for the next translations.
+
+	Settings (system properties):
+	- j2ir.maxIdleJars: number of jar files kept open without handles (default: 16)
+ */
+public class ClassIndex extends AbstractMap<String, String> implements Closeable {
+	final private static Logger logger = (new J2IRLogger()).logger;
+	final private static int MAX_IDLE_JARS = Integer.getInteger("j2ir.maxIdleJars", 16);
+
+	// Opened jar files shared by all the indices in this JVM, and the ones without handles
+	// in access order (both guarded by jarIndices)
+	final private static Map<String, JarIndex> jarIndices = new HashMap<>();
+	final private static LinkedHashMap<String, JarIndex> idleJars = new LinkedHashMap<>(16, 0.75f, true);
+
+	private final List<String> jarPaths;
+	private final List<Jar> jars = new ArrayList<>();
+	private Map<String, String> classMap = null;
+
+	public ClassIndex(String pathString) {
+		jarPaths = Arrays.asList(pathString.split(";"));
+		try {
+			for (String jar : jarPaths)
+				jars.add(openJar(jar));
+		} catch (RuntimeException e) {
+			close();
+			throw e;
+		}
+	}
+
+	@Override
+	public String get(Object key) {
+		if (!(key instanceof String))
+			return null;
+		String entryName = ((String) key).replace('.', '/') + ".class";
+
+		// Later jars take precedence
+		for (int i = jars.size() - 1; i >= 0; i -= 1) {
+			if (jars.get(i).getEntry(entryName) != null)
+				return jarPaths.get(i) + ":" + entryName;
+		}
+		return null;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return get(key) != null;
+	}
+
+	@Override
+	public Set<Entry<String, String>> entrySet() {
+		if (classMap == null) {
+			Map<String, String> m = new HashMap<>();
+			for (int i = 0; i < jars.size(); i += 1) {
+				for (String entryName : jars.get(i).index.getEntries()) {
+					String clazzName = entryName.substring(0, entryName.length() - 6).replace('/', '.');
+					m.put(clazzName, jarPaths.get(i) + ":" + entryName);
+				}
+			}
+			classMap = Collections.unmodifiableMap(m);
+		}
+		return classMap.entrySet();
+	}
+
+	// Release the jar files of the index
+	@Override
+	public void close() {
+		for (Jar jar : jars)
+			jar.close();
+		jars.clear();
+	}
+
+	// Open a handle of a shared jar file, which must be closed after use
+	public static Jar openJar(String jar) {
+		File f = new File(jar).getAbsoluteFile();
+		synchronized (jarIndices) {
+			JarIndex index = jarIndices.get(jar);
+			if (index != null && !index.isValid(f)) {
+				jarIndices.remove(jar);
+				idleJars.remove(jar);
+				index.stale = true;
+				if (index.refCount == 0)
+					index.close();
+				index = null;
+			}
+			if (index == null) {
+				index = new JarIndex(f);
+				jarIndices.put(jar, index);
+			}
+			index.refCount += 1;
+			idleJars.remove(jar);
+			return new Jar(jar, index);
+		}
+	}
+
+	private static void release(String jar, JarIndex index) {
+		synchronized (jarIndices) {
+			index.refCount -= 1;
+			if (index.refCount > 0)
+				return;
+			if (index.stale) {
+				index.close();
+				return;
+			}
+			idleJars.put(jar, index);
+			Iterator<Map.Entry<String, JarIndex>> it = idleJars.entrySet().iterator();
+			while (idleJars.size() > MAX_IDLE_JARS && it.hasNext()) {
+				Map.Entry<String, JarIndex> e = it.next();
+				it.remove();
+				jarIndices.remove(e.getKey());
+				e.getValue().close();
+			}
+		}
+	}
+
+	/*
+		Jar is a handle of an opened jar file. The jar file stays open until the handle is closed.
+	 */
+	public static class Jar implements Closeable {
+		private final String path;
+		private final JarIndex index;
+		private boolean closed = false;
+
+		private Jar(String path, JarIndex index) {
+			this.path = path;
+			this.index = index;
+		}
+
+		public ZipEntry getEntry(String entryName) {
+			return index.getZipFile().getEntry(entryName);
+		}
+
+		public InputStream getInputStream(ZipEntry entry) throws IOException {
+			return index.getZipFile().getInputStream(entry);
+		}
+
+		// Return the class entries starting with the given prefix
+		public List<String> getEntries(String prefix) {
+			return index.getEntries(prefix);
+		}
+
+		@Override
+		public synchronized void close() {
+			if (!closed) {
+				closed = true;
+				release(path, index);
+			}
+		}
+	}
+
+	private static class JarIndex {
+		private final File jarFile;
+		private final long size;
+		private final long mtime;
+		private final ZipFile zipFile;
+		private NavigableSet<String> entries = null;
+
+		// Class entries in sorted order for the prefix lookups
+		private String[] sortedEntries = null;
+
+		// Number of open handles and whether the jar file has changed since it was opened
+		// (guarded by jarIndices)
+		private int refCount = 0;
+		private boolean stale = false;
+
+		JarIndex(File f) {
+			jarFile = f;
+			size = f.length();
+			mtime = f.lastModified();
+			try {
+				zipFile = new ZipFile(f);
+			} catch (IOException e) {
+				throw new RuntimeException("Cannot open jar file " + f);
+			}
+		}
+
+		boolean isValid(File f) {
+			return f.equals(jarFile) && f.length() == size && f.lastModified() == mtime;
+		}
+
+		ZipFile getZipFile() {
+			return zipFile;
+		}
+
+		void close() {
+			try {
+				zipFile.close();
+			} catch (IOException e) {
+				logger.warning("Cannot close jar file " + jarFile + ": " + e);
+			}
+		}
+
+		// Return the entries starting with the prefix by a binary search of their range
+		List<String> getEntries(String prefix) {
+			String[] sorted = getSortedEntries();
+			int from = Arrays.binarySearch(sorted, prefix);
+			if (from < 0)
+				from = -from - 1;
+			int to = from;
+			while (to < sorted.length && sorted[to].startsWith(prefix))
+				to += 1;
+			return Arrays.asList(sorted).subList(from, to);
+		}
+
+		private synchronized String[] getSortedEntries() {
+			if (sortedEntries == null)
+				sortedEntries = getEntries().toArray(new String[0]);
+			return sortedEntries;
+		}
+
+		synchronized NavigableSet<String> getEntries() {
+			if (entries == null)
+				entries = buildIndex();
+			return entries;
+		}
+
+		private NavigableSet<String> buildIndex() {
+			NavigableSet<String> set = new TreeSet<>();
+			Enumeration<? extends ZipEntry> entity = zipFile.entries();
+			while (entity.hasMoreElements()) {
+				ZipEntry ze = entity.nextElement();
+				if (!ze.isDirectory() && ze.getName().endsWith(".class"))
+					set.add(ze.getName());
+			}
+			logger.info("Built class index of " + jarFile + " (" + set.size() + " classes)");
+			return set;
+		}
+	}
+}
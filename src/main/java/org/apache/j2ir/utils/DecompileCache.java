@@ -0,0 +1,180 @@
+package org.apache.j2ir.utils;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+
+/*
+	DecompileCache is a persistent content-addressed cache of the Java source
+	code of decompiled classes. An entry is keyed by a hash of the class
+	(and inner class) bytes and the decompiler options, and the cache is capped
+	in size with LRU eviction (file modification time is the access time).
+	Recently used entries are also kept in memory, which mostly pays off when
+	a long-running server shares one cache between its translations.
+
+	The cache is only used when a cache directory is given (see Options); the
+	hits and misses are counted in the metrics of each translation.
+ */
+public class DecompileCache {
+	final private static Logger logger = (new J2IRLogger()).logger;
+	final public static int DEFAULT_MEM_ENTRIES = 256;
+
+	// Bump when the decompiler options or the cached code changes
+	// (2: the code is cached before the fixup)
+	final private static int FORMAT_VERSION = 2;
+
+	final private static String ENTRY_SUFFIX = ".java";
+	final private static String TMP_SUFFIX = ".tmp";
+	final private static double EVICT_RATIO = 0.9;
+
+	private final File cacheDir;
+	private final long maxSize;
+	private final Map<String, String> memCache;
+	private long totalSize = -1;
+
+	// The size cap is in bytes
+	public DecompileCache(String dir, long maxSize, final int memEntries) {
+		this.cacheDir = new File(dir);
+		this.maxSize = maxSize;
+		this.memCache = new LinkedHashMap<String, String>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+				return size() > memEntries;
+			}
+		};
+	}
+
+	// Compute the cache key of a class from its class bytes keyed by class file names
+	public static String getKey(Map<String, byte[]> classes) {
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-256");
+			md.update(("j2ir-" + FORMAT_VERSION + Decompiler.getOptions()).getBytes(StandardCharsets.UTF_8));
+			for (Map.Entry<String, byte[]> e : new TreeMap<>(classes).entrySet()) {
+				md.update(e.getKey().getBytes(StandardCharsets.UTF_8));
+				md.update(e.getValue());
+			}
+			StringBuilder sb = new StringBuilder();
+			for (byte b : md.digest())
+				sb.append(String.format("%02x", b));
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException("Cannot compute decompile cache key: " + e);
+		}
+	}
+
+	// Return the cached processed Java code, or null if it is not cached
+	public String get(String key) {
+		String cached = getFromMemory(key);
+		if (cached != null)
+			return cached;
+
+		File f = getFile(key);
+		if (!f.exists())
+			return null;
+		try {
+			String code = new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8);
+			f.setLastModified(System.currentTimeMillis());
+			putToMemory(key, code);
+			return code;
+		} catch (IOException e) {
+			logger.warning("Cannot read decompile cache entry " + f + ": " + e);
+			return null;
+		}
+	}
+
+	public void put(String key, String code) {
+		putToMemory(key, code);
+		File f = getFile(key);
+		try {
+			if (!cacheDir.exists() && !cacheDir.mkdirs() && !cacheDir.exists())
+				throw new IOException("cannot create " + cacheDir);
+
+			// Write to a temporary file first so readers never see a partial entry
+			File tmp = File.createTempFile(key, TMP_SUFFIX, cacheDir);
+			Files.write(tmp.toPath(), code.getBytes(StandardCharsets.UTF_8));
+			synchronized (this) {
+				// A replaced entry only changes the cache size by the difference
+				long oldSize = f.exists() ? f.length() : 0;
+				Files.move(tmp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				addAndEvict(f.length() - oldSize);
+			}
+		} catch (IOException e) {
+			logger.warning("Cannot write decompile cache entry " + f + ": " + e);
+		}
+	}
+
+	private String getFromMemory(String key) {
+		synchronized (memCache) {
+			return memCache.get(key);
+		}
+	}
+
+	private void putToMemory(String key, String code) {
+		synchronized (memCache) {
+			memCache.put(key, code);
+		}
+	}
+
+	private File getFile(String key) {
+		return new File(cacheDir, key + ENTRY_SUFFIX);
+	}
+
+	// Return the cache entries, without the temporary files which are still being written
+	private File[] listEntries() {
+		return cacheDir.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.endsWith(ENTRY_SUFFIX);
+			}
+		});
+	}
+
+	// Track the cache size and evict the least recently used entries when it is over the cap.
+	// The directory is only listed when the cache is first used and when it is over the cap,
+	// and the eviction goes down to EVICT_RATIO of the cap so that it is not listed on every put.
+	private synchronized void addAndEvict(long delta) {
+		if (totalSize < 0) {
+			File[] entries = listEntries();
+			if (entries == null)
+				return;
+			totalSize = 0;
+			for (File f : entries)
+				totalSize += f.length();
+		} else
+			totalSize += delta;
+
+		if (totalSize <= maxSize)
+			return;
+
+		File[] entries = listEntries();
+		if (entries == null)
+			return;
+		Arrays.sort(entries, new Comparator<File>() {
+			@Override
+			public int compare(File f1, File f2) {
+				return Long.compare(f1.lastModified(), f2.lastModified());
+			}
+		});
+		long target = (long) (maxSize * EVICT_RATIO);
+		for (File f : entries) {
+			if (totalSize <= target)
+				break;
+			long len = f.length();
+			if (f.delete()) {
+				totalSize -= len;
+				logger.fine("Evict decompile cache entry " + f.getName());
+			}
+		}
+	}
+}
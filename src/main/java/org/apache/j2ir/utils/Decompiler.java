@@ -0,0 +1,142 @@
+package org.apache.j2ir.utils;
+
+import org.jetbrains.java.decompiler.main.Fernflower;
+import org.jetbrains.java.decompiler.main.extern.IBytecodeProvider;
+import org.jetbrains.java.decompiler.main.extern.IFernflowerLogger;
+import org.jetbrains.java.decompiler.main.extern.IResultSaver;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.jar.Manifest;
+import java.util.logging.Logger;
+
+/*
+	Decompiler runs Fernflower inside the J2IR JVM.
+	Class bytes are handed to Fernflower through a bytecode provider and the
+	decompiled source is captured through a result saver, so no decompiler
+	process is started and no output file is written by the decompiler.
+ */
+public class Decompiler {
+	final private static Logger logger = (new J2IRLogger()).logger;
+
+	// Fernflower options (same as the defaults of the command line decompiler)
+	final private static Map<String, Object> options = new HashMap<>();
+
+	// Root of the virtual paths of the class bytes handed to Fernflower
+	final private static File virtualRoot = new File("j2ir-classes").getAbsoluteFile();
+
+	// Options in a stable textual form
+	public static String getOptions() {
+		return new TreeMap<>(options).toString();
+	}
+
+	// Decompile a set of class bytes keyed by their class file (entry) names.
+	// Return the source code of the class with the given simple name.
+	public static String decompile(final String className, final Map<String, byte[]> classes) {
+		final Map<String, byte[]> bytecode = new HashMap<>();
+		for (String name : classes.keySet())
+			bytecode.put(new File(virtualRoot, name).getAbsolutePath(), classes.get(name));
+
+		final Map<String, String> results = new HashMap<>();
+
+		IBytecodeProvider provider = new IBytecodeProvider() {
+			@Override
+			public byte[] getBytecode(String externalPath, String internalPath) throws IOException {
+				byte[] bytes = bytecode.get(externalPath);
+				if (bytes == null)
+					throw new IOException("Cannot find bytecode for " + externalPath);
+				return bytes;
+			}
+		};
+
+		Fernflower fernflower = new Fernflower(provider, new ResultCollector(results), options, new DecompilerLogger());
+		try {
+			for (String path : bytecode.keySet())
+				fernflower.getStructContext().addSpace(new File(path), true);
+			fernflower.decompileContext();
+		} finally {
+			fernflower.clearContext();
+		}
+
+		for (String qualifiedName : results.keySet()) {
+			if (qualifiedName.equals(className) || qualifiedName.endsWith("/" + className))
+				return results.get(qualifiedName);
+		}
+		throw new RuntimeException("Cannot decompile class " + className);
+	}
+
+	// Collect decompiled source code in memory instead of saving files
+	private static class ResultCollector implements IResultSaver {
+		private final Map<String, String> results;
+
+		ResultCollector(Map<String, String> results) {
+			this.results = results;
+		}
+
+		@Override
+		public void saveClassFile(String path, String qualifiedName, String entryName, String content, int[] mapping) {
+			if (content != null)
+				results.put(qualifiedName, content);
+		}
+
+		@Override
+		public void saveFolder(String path) {
+			// Do nothing
+		}
+
+		@Override
+		public void copyFile(String source, String path, String entryName) {
+			// Do nothing
+		}
+
+		@Override
+		public void createArchive(String path, String archiveName, Manifest manifest) {
+			// Do nothing
+		}
+
+		@Override
+		public void saveDirEntry(String path, String archiveName, String entryName) {
+			// Do nothing
+		}
+
+		@Override
+		public void copyEntry(String source, String path, String archiveName, String entry) {
+			// Do nothing
+		}
+
+		@Override
+		public void saveClassEntry(String path, String archiveName, String qualifiedName, String entryName, String content) {
+			// Do nothing
+		}
+
+		@Override
+		public void closeArchive(String path, String archiveName) {
+			// Do nothing
+		}
+	}
+
+	// Forward decompiler messages to the J2IR logger
+	private static class DecompilerLogger extends IFernflowerLogger {
+		@Override
+		public void writeMessage(String message, Severity severity) {
+			switch (severity) {
+				case ERROR:
+					logger.severe(message);
+					break;
+				case WARN:
+					logger.warning(message);
+					break;
+				default:
+					logger.finest(message);
+			}
+		}
+
+		@Override
+		public void writeMessage(String message, Throwable t) {
+			logger.severe(message + ": " + t);
+		}
+	}
+}
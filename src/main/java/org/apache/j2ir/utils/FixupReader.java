@@ -0,0 +1,110 @@
+package org.apache.j2ir.utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+	FixupReader applies the rewrite rules to decompiled Java code line by line
+	while the parser reads it, so the processed code is never stored.
+	The rules run in order and a rule dropping a line skips the later rules.
+	Each translation passes its own list of rules (see Options), which starts
+	with the built-in rules of getDefaultRules.
+ */
+public class FixupReader extends Reader {
+
+	// Return a new list of the built-in rules
+	public static List<RewriteRule> getDefaultRules() {
+		List<RewriteRule> rules = new ArrayList<>();
+		rules.add(new RewriteRule("classImport") {
+			@Override
+			protected String rewrite(String line) {
+				return (line.startsWith("import ") && line.contains(".class")) ? null : line;
+			}
+		});
+		rules.add(new RewriteRule("emptyPackageImport") {
+			@Override
+			protected String rewrite(String line) {
+				return (line.startsWith("import ") && line.contains("..")) ? null : line;
+			}
+		});
+		rules.add(new RewriteRule("emptyName") {
+			@Override
+			protected String rewrite(String line) {
+				return line.contains(".;") ? null : line;
+			}
+		});
+		rules.add(new RewriteRule("module") {
+			@Override
+			protected String rewrite(String line) {
+				return line.contains(".MODULE$") ? line.replace(".MODULE$", "SYNTHETIC_MODULE") : line;
+			}
+		});
+		rules.add(new RewriteRule("classDot") {
+			@Override
+			protected String rewrite(String line) {
+				return line.contains("class.") ? line.replace("class.", "super.") : line;
+			}
+		});
+		return rules;
+	}
+
+	private final BufferedReader in;
+	private final List<RewriteRule> rules;
+	private final Metrics metrics;
+	private String line = "";
+	private int pos = 0;
+
+	// Metrics (can be null) count the hits of the rules as "fixup.<rule name>"
+	public FixupReader(Reader in, List<RewriteRule> rules, Metrics metrics) {
+		this.in = (in instanceof BufferedReader) ? (BufferedReader) in : new BufferedReader(in);
+		this.rules = rules;
+		this.metrics = metrics;
+	}
+
+	public FixupReader(Reader in, Metrics metrics) {
+		this(in, getDefaultRules(), metrics);
+	}
+
+	// Move to the next line which is not dropped. Return false at the end of the code.
+	private boolean nextLine() throws IOException {
+		String l;
+		while ((l = in.readLine()) != null) {
+			for (RewriteRule rule : rules) {
+				String r = rule.rewrite(l);
+				if (r != l && metrics != null)
+					metrics.increment("fixup." + rule.getName());
+				l = r;
+				if (l == null)
+					break;
+			}
+			if (l != null) {
+				line = l + "\n";
+				pos = 0;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public int read(char[] cbuf, int off, int len) throws IOException {
+		int n = 0;
+		while (n < len) {
+			if (pos == line.length() && !nextLine())
+				break;
+			int k = Math.min(len - n, line.length() - pos);
+			line.getChars(pos, pos + k, cbuf, off + n);
+			pos += k;
+			n += k;
+		}
+		return (n == 0 && len > 0) ? -1 : n;
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+}
@@ -29,7 +29,8 @@ public class J2IRLogger {
 		}
 	}
 
+	// The level can be set with the j2ir.logLevel system property
 	public J2IRLogger() {
-		this("FINE");
+		this(System.getProperty("j2ir.logLevel", "FINE"));
 	}
 }
\ No newline at end of file
@@ -0,0 +1,241 @@
+package org.apache.j2ir.utils;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+
+/*
+	Metrics records the wall time and the allocated bytes of the phases of a
+	translation, in total and per class, and counters such as the number of
+	processed classes and methods. It can be used by several threads at once.
+
+	Phases run on worker threads in parallel, so the sum of the phase times
+	can be larger than the total wall time of the translation.
+	Allocation is measured per thread with com.sun.management.ThreadMXBean
+	and reported as -1 if the JVM does not support it.
+ */
+public class Metrics {
+	final private static Logger logger = (new J2IRLogger()).logger;
+
+	// Phases in the order of the report
+	final public static String INDEX = "index";
+	final public static String READ = "read";
+	final public static String DECOMPILE = "decompile";
+	final public static String PARSE = "parse";
+	final public static String TYPE_ENV = "typeenv";
+	final public static String VISIT = "visit";
+	final public static String EMIT = "emit";
+
+	final private static com.sun.management.ThreadMXBean threadBean = getThreadBean();
+
+	private final long startTime = System.nanoTime();
+	private final Map<String, Stat> phases = new LinkedHashMap<>();
+	private final Map<String, Map<String, Stat>> classPhases = new TreeMap<>();
+	private final Map<String, Long> counters = new TreeMap<>();
+
+	public Metrics() {
+		for (String phase : new String[] {INDEX, READ, DECOMPILE, PARSE, TYPE_ENV, VISIT, EMIT})
+			phases.put(phase, new Stat());
+	}
+
+	// Start measuring a phase on the current thread. The class name can be null.
+	public Phase start(String phase, String className) {
+		return new Phase(phase, className);
+	}
+
+	public synchronized void increment(String counter) {
+		add(counter, 1);
+	}
+
+	public synchronized void add(String counter, long value) {
+		Long v = counters.get(counter);
+		counters.put(counter, (v == null ? 0 : v) + value);
+	}
+
+	public synchronized long getCounter(String counter) {
+		Long v = counters.get(counter);
+		return (v == null) ? 0 : v;
+	}
+
+	public synchronized long getTime(String phase) {
+		Stat s = phases.get(phase);
+		return (s == null) ? 0 : s.time;
+	}
+
+	private synchronized void record(String phase, String className, long time, long alloc) {
+		Stat s = phases.get(phase);
+		if (s == null) {
+			s = new Stat();
+			phases.put(phase, s);
+		}
+		s.add(time, alloc);
+
+		if (className == null)
+			return;
+		Map<String, Stat> m = classPhases.get(className);
+		if (m == null) {
+			m = new LinkedHashMap<>();
+			classPhases.put(className, m);
+		}
+		s = m.get(phase);
+		if (s == null) {
+			s = new Stat();
+			m.put(phase, s);
+		}
+		s.add(time, alloc);
+	}
+
+	public synchronized String toJson() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("{\n");
+		sb.append("  \"totalTimeMs\": ").append(toMs(System.nanoTime() - startTime)).append(",\n");
+
+		sb.append("  \"counters\": {");
+		String sep = "";
+		for (String counter : counters.keySet()) {
+			sb.append(sep).append("\n    ").append(quote(counter)).append(": ").append(counters.get(counter));
+			sep = ",";
+		}
+		sb.append(counters.isEmpty() ? "},\n" : "\n  },\n");
+
+		sb.append("  \"phases\": ");
+		appendPhases(sb, phases, "  ");
+		sb.append(",\n");
+
+		// Slowest classes first
+		List<String> classNames = new ArrayList<>(classPhases.keySet());
+		Collections.sort(classNames, new Comparator<String>() {
+			@Override
+			public int compare(String c1, String c2) {
+				return Long.compare(getClassTime(c2), getClassTime(c1));
+			}
+		});
+		sb.append("  \"classes\": [");
+		sep = "";
+		for (String className : classNames) {
+			sb.append(sep).append("\n    {\"name\": ").append(quote(className));
+			sb.append(", \"timeMs\": ").append(toMs(getClassTime(className)));
+			sb.append(", \"phases\": ");
+			appendPhases(sb, classPhases.get(className), "    ");
+			sb.append("}");
+			sep = ",";
+		}
+		sb.append(classNames.isEmpty() ? "]\n" : "\n  ]\n");
+		sb.append("}\n");
+		return sb.toString();
+	}
+
+	public void saveAsFile(String fileName) throws IOException {
+		try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(fileName), StandardCharsets.UTF_8))) {
+			bw.write(toJson());
+		}
+		logger.info("Metrics report: " + fileName);
+	}
+
+	private long getClassTime(String className) {
+		long time = 0;
+		for (Stat s : classPhases.get(className).values())
+			time += s.time;
+		return time;
+	}
+
+	private static void appendPhases(StringBuilder sb, Map<String, Stat> m, String indent) {
+		sb.append("{");
+		String sep = "";
+		for (String phase : m.keySet()) {
+			Stat s = m.get(phase);
+			sb.append(sep).append("\n").append(indent).append("  ").append(quote(phase));
+			sb.append(": {\"count\": ").append(s.count);
+			sb.append(", \"timeMs\": ").append(toMs(s.time));
+			sb.append(", \"allocBytes\": ").append(s.alloc).append("}");
+			sep = ",";
+		}
+		sb.append(m.isEmpty() ? "}" : "\n" + indent + "}");
+	}
+
+	private static String toMs(long nanos) {
+		return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+	}
+
+	private static String quote(String s) {
+		StringBuilder sb = new StringBuilder("\"");
+		for (char c : s.toCharArray()) {
+			if (c == '"' || c == '\\')
+				sb.append('\\').append(c);
+			else if (c < 0x20)
+				sb.append(String.format("\\u%04x", (int) c));
+			else
+				sb.append(c);
+		}
+		return sb.append("\"").toString();
+	}
+
+	private static com.sun.management.ThreadMXBean getThreadBean() {
+		try {
+			java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+			if (bean instanceof com.sun.management.ThreadMXBean) {
+				com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+				if (sunBean.isThreadAllocatedMemorySupported()) {
+					sunBean.setThreadAllocatedMemoryEnabled(true);
+					return sunBean;
+				}
+			}
+		} catch (Throwable e) {
+			logger.fine("Thread allocation is not measurable: " + e);
+		}
+		return null;
+	}
+
+	private static long getAllocatedBytes() {
+		if (threadBean == null)
+			return -1;
+		return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private static class Stat {
+		long count = 0;
+		long time = 0;
+		long alloc = 0;
+
+		void add(long time, long alloc) {
+			this.count += 1;
+			this.time += time;
+			if (this.alloc >= 0)
+				this.alloc = (alloc < 0) ? -1 : this.alloc + alloc;
+		}
+	}
+
+	// A phase measured on one thread
+	public class Phase {
+		private final String phase;
+		private final String className;
+		private final long startTime;
+		private final long startAlloc;
+
+		private Phase(String phase, String className) {
+			this.phase = phase;
+			this.className = className;
+			this.startAlloc = getAllocatedBytes();
+			this.startTime = System.nanoTime();
+		}
+
+		public void end() {
+			long time = System.nanoTime() - startTime;
+			long alloc = (startAlloc < 0) ? -1 : getAllocatedBytes() - startAlloc;
+			record(phase, className, time, alloc);
+		}
+	}
+}
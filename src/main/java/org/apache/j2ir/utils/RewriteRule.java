@@ -0,0 +1,21 @@
+package org.apache.j2ir.utils;
+
+/*
+	RewriteRule rewrites a line of decompiled Java code to bridge the gap
+	between the decompiler and the Java parser. FixupReader counts the lines
+	it changes in the metrics of the translation.
+ */
+public abstract class RewriteRule {
+	private final String name;
+
+	protected RewriteRule(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	// Return the rewritten line, the same line if the rule does not apply, or null to drop the line
+	protected abstract String rewrite(String line);
+}
@@ -8,19 +8,22 @@ import com.github.javaparser.ast.expr.AnnotationExpr;
 import com.github.javaparser.ast.expr.Expression;
 import com.github.javaparser.ast.expr.MethodCallExpr;
 import com.github.javaparser.ast.expr.ObjectCreationExpr;
-import com.github.javaparser.ast.internal.Utils;
 import com.github.javaparser.ast.type.Type;
 import org.apache.j2ir.model.ClassModel;
+import org.apache.j2ir.model.MethodIndex;
+import org.apache.j2ir.model.MethodSignature;
 import org.apache.j2ir.visitor.TypeVisitor;
 
 import java.io.*;
-import java.util.Enumeration;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
+import java.util.Set;
 import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
 
 public class Util {
 	final private static Logger logger = (new J2IRLogger()).logger;
@@ -41,24 +44,9 @@ public class Util {
 		}
 	}
 
-	public static Map<String, String> buildClass2SrcMapFromJar(String pathString) throws Exception {
-		Map<String, String> classMap = new HashMap<>();
-		String[] jarPaths = pathString.split(";");
-
-		for (String jar : jarPaths) {
-			JarFile f = new JarFile(jar);
-			Enumeration<JarEntry> entity = f.entries();
-			while (entity.hasMoreElements()) {
-				JarEntry je = entity.nextElement();
-				if (!je.isDirectory() && je.getName().endsWith(".class")) {
-					String clazzName = je.getName().substring(0, je.getName().length() - 6).replace('/', '.');
-					classMap.put(clazzName, jar + ":" + je.getName());
-					logger.info(clazzName + " -> " + jar + ":" + je.getName());
-				}
-			}
-			f.close();
-		}
-		return classMap;
+	// The class index holds the jar files open until it is closed
+	public static ClassIndex buildClass2SrcMapFromJar(String pathString) throws Exception {
+		return new ClassIndex(pathString);
 	}
 
 	public static void dumpMap(Map<?, ?> m) {
@@ -67,75 +55,142 @@ public class Util {
 		}
 	}
 
-	public static String decompileClassToJava(String filePath) throws IOException, InterruptedException {
-		String bcFilePath = filePath;
+	// Write the decompiled code of a class to a Java source file in the given directory
+	public static String dumpJavaCode(String filePath, String javaCode, String dir) throws IOException {
+		String javaFilePath = dir + ps + getClassFileName(filePath).replace(".class", ".java");
+		try (BufferedWriter bw = Files.newBufferedWriter(Paths.get(javaFilePath), StandardCharsets.UTF_8)) {
+			bw.write(javaCode);
+		}
+		return javaFilePath;
+	}
+
+	public static void deleteRecursively(File f) {
+		File[] children = f.listFiles();
+		if (children != null) {
+			for (File child : children)
+				deleteRecursively(child);
+		}
+		if (!f.delete())
+			logger.warning("Cannot delete " + f);
+	}
+
+	// Decompile a class file (the jar file path and the entry are separated by ':')
+	// and return the Java code. The code is fixed up for the parser by parseDecompiledCode.
+	public static String decompileClass(String filePath, Metrics metrics) throws IOException {
+		return decompileClass(filePath, null, null, metrics);
+	}
+
+	// Decompile a class file with only the methods of the given names (and the methods and
+	// inner classes they need), or the whole class if the names are null.
+	// The code is reused from the cache if it is not null.
+	public static String decompileClass(String filePath, Set<String> methodNames, DecompileCache cache,
+										Metrics metrics) throws IOException {
+		String className = getClassName(filePath);
+
+		Metrics.Phase phase = metrics.start(Metrics.READ, className);
+		Map<String, byte[]> classes;
+		String mainEntry;
 		if (filePath.contains(":")) { // Class file is put inside a jar file
 			String jarFilePath = filePath.substring(0, filePath.lastIndexOf(":"));
-			bcFilePath = filePath.substring(0, filePath.lastIndexOf(ps) + 1) +
-					filePath.substring(filePath.lastIndexOf(":") + 1, filePath.length());
-			try {
-				// Unzip the class file
-				Process unzipProc = Runtime.getRuntime().exec("unzip " + jarFilePath + " " + bcFilePath,
-						null, new File(jarFilePath.substring(0, jarFilePath.lastIndexOf(ps))));
-				unzipProc.waitFor();
-
-				// Unzip the subclass files (if any)
-				unzipProc = Runtime.getRuntime().exec("unzip " + jarFilePath + " " + bcFilePath.replace(".class", "$$*.class"),
-						null, new File(jarFilePath.substring(0, jarFilePath.lastIndexOf(ps))));
-				unzipProc.waitFor();
-			} catch (IOException e) {
-				throw new RuntimeException("Cannot open jar file " + jarFilePath);
+			String entryName = filePath.substring(filePath.lastIndexOf(":") + 1, filePath.length());
+			classes = readClassesFromJar(jarFilePath, entryName);
+			mainEntry = entryName;
+		}
+		else {
+			classes = readClassesFromDir(filePath);
+			mainEntry = new File(filePath).getName();
+		}
+		if (methodNames != null) {
+			ClassFilePruner pruner = new ClassFilePruner(mainEntry, classes);
+			classes = pruner.prune(methodNames);
+			metrics.add("prunedMethods", pruner.getNumPrunedMethods());
+			metrics.add("prunedInnerClasses", pruner.getNumPrunedClasses());
+		}
+		phase.end();
+
+		// Reuse the code if the same class has been decompiled before
+		String cacheKey = null;
+		if (cache != null) {
+			cacheKey = DecompileCache.getKey(classes);
+			String javaCode = cache.get(cacheKey);
+			if (javaCode != null) {
+				logger.fine("Decompile cache hit for " + filePath);
+				metrics.increment("decompileCacheHits");
+				return javaCode;
 			}
+			metrics.increment("decompileCacheMisses");
 		}
 
-		if (!new File(bcFilePath).exists())
-			throw new RuntimeException("Cannot load class file " + bcFilePath);
-
-		Process decompileProc = Runtime.getRuntime().exec("java -jar fernflower.jar " + bcFilePath.replace(".class", "*.class") + " " + tmpDir);
-		decompileProc.waitFor();
+		phase = metrics.start(Metrics.DECOMPILE, className);
+		String javaCode = Decompiler.decompile(className, classes);
+		phase.end();
+		metrics.increment("decompiledClasses");
+		if (cache != null)
+			cache.put(cacheKey, javaCode);
+		return javaCode;
+	}
 
-//		Map<String, Object> mapOptions = new HashMap<String, Object>();
-//		File dest = new File(tmpPath);
-//		ConsoleDecompiler decompiler = new ConsoleDecompiler(dest, mapOptions);
-//		decompiler.addSpace(bcFile, true);
-//		decompiler.decompileContext();
+	// Return the simple class name of a class file
+	public static String getClassName(String filePath) {
+		return getClassFileName(filePath).replace(".class", "");
+	}
 
-		// FIXME: Windows/Linux support
-		String JavaFilePath = tmpDir + ps;
+	// Return the class file name without the jar file and package paths
+	private static String getClassFileName(String filePath) {
+		String bcFilePath = filePath;
+		if (filePath.contains(":"))
+			bcFilePath = filePath.substring(filePath.lastIndexOf(":") + 1, filePath.length());
+		if (bcFilePath.contains("/"))
+			bcFilePath = bcFilePath.substring(bcFilePath.lastIndexOf("/") + 1, bcFilePath.length());
+		return new File(bcFilePath).getName();
+	}
 
-		if (bcFilePath.contains(ps))
-			JavaFilePath += bcFilePath.substring(bcFilePath.lastIndexOf(ps) + 1, bcFilePath.length());
-		else
-			JavaFilePath += bcFilePath;
-		JavaFilePath = JavaFilePath.replace(".class", ".java");
+	// Read the class file and its subclass files (if any) from a jar file
+	private static Map<String, byte[]> readClassesFromJar(String jarFilePath, String entryName) throws IOException {
+		Map<String, byte[]> classes = new HashMap<>();
+		try (ClassIndex.Jar jar = ClassIndex.openJar(jarFilePath)) {
+			ZipEntry classEntry = jar.getEntry(entryName);
+			if (classEntry == null)
+				throw new RuntimeException("Cannot load class file " + entryName + " from " + jarFilePath);
+			classes.put(entryName, readAllBytes(jar.getInputStream(classEntry)));
+
+			for (String innerEntryName : jar.getEntries(entryName.replace(".class", "$")))
+				classes.put(innerEntryName, readAllBytes(jar.getInputStream(jar.getEntry(innerEntryName))));
+		}
+		return classes;
+	}
 
-		// Process to bridge the gap between decompiler and java parser
-		String tmpFilePath = JavaFilePath.replace(".java", "_processed.java");
-		processJavaCodeFromFernFlower(JavaFilePath, tmpFilePath);
+	// Read the class file and its subclass files (if any) from a directory
+	private static Map<String, byte[]> readClassesFromDir(String bcFilePath) throws IOException {
+		Map<String, byte[]> classes = new HashMap<>();
+		File bcFile = new File(bcFilePath);
+		if (!bcFile.exists())
+			throw new RuntimeException("Cannot load class file " + bcFilePath);
+		classes.put(bcFile.getName(), Files.readAllBytes(bcFile.toPath()));
 
-		return tmpFilePath;
+		final String innerPrefix = bcFile.getName().replace(".class", "$");
+		File[] innerFiles = bcFile.getAbsoluteFile().getParentFile().listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.startsWith(innerPrefix) && name.endsWith(".class");
+			}
+		});
+		if (innerFiles != null) {
+			for (File f : innerFiles)
+				classes.put(f.getName(), Files.readAllBytes(f.toPath()));
+		}
+		return classes;
 	}
 
-	private static void processJavaCodeFromFernFlower(String inFile, String outFile) throws IOException {
-		BufferedWriter bw = new BufferedWriter(new FileWriter(outFile));
-		try (BufferedReader br = new BufferedReader(new FileReader(inFile))) {
-			String line;
-			while ((line = br.readLine()) != null) {
-				if (line.startsWith("import ") && line.contains(".class"))
-					continue;
-				else if (line.startsWith("import ") && line.contains(".."))
-					continue;
-				else if (line.contains(".;"))
-					continue;
-				else if (line.contains(".MODULE$"))
-					line = line.replace(".MODULE$", "SYNTHETIC_MODULE");
-
-				if (line.contains("class."))
-					line = line.replace("class.", "super.");
-				bw.write(line + "\n");
-			}
+	private static byte[] readAllBytes(InputStream in) throws IOException {
+		try (InputStream is = in) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buf = new byte[8192];
+			int n;
+			while ((n = is.read(buf)) != -1)
+				out.write(buf, 0, n);
+			return out.toByteArray();
 		}
-		bw.close();
 	}
 
 	public static CompilationUnit parseJavaSource(String srcFilePath) throws ParseException, IOException {
@@ -146,8 +201,28 @@ public class Util {
 		return cu;
 	}
 
+	public static CompilationUnit parseJavaCode(String javaCode) throws ParseException {
+		return JavaParser.parse(new StringReader(javaCode));
+	}
+
+	// Parse decompiled Java code while fixing it up for the parser with the rules (see FixupReader).
+	// The reader is closed. Metrics can be null.
+	public static CompilationUnit parseDecompiledCode(Reader decompiledCode, List<RewriteRule> rules,
+			Metrics metrics) throws ParseException, IOException {
+		try (FixupReader reader = new FixupReader(decompiledCode, rules, metrics)) {
+			return JavaParser.parse(reader);
+		}
+	}
+
+	// Parse decompiled Java code with the built-in rules
+	public static CompilationUnit parseDecompiledCode(Reader decompiledCode, Metrics metrics)
+			throws ParseException, IOException {
+		return parseDecompiledCode(decompiledCode, FixupReader.getDefaultRules(), metrics);
+	}
+
 	public static Type getExpType(Expression exp, Map<String, Type> typeEnv, ClassModel model) {
-		return new TypeVisitor(model).visit(exp, typeEnv);
+		TypeVisitor visitor = (model == null) ? new TypeVisitor(null) : model.getTypeVisitor();
+		return visitor.visit(exp, typeEnv);
 	}
 
 	public static MethodDeclaration getFirstMethodByName(CompilationUnit cu, String name) {
@@ -185,39 +260,11 @@ public class Util {
 	}
 
 	public static boolean isSameMethodSig(String sig1, String sig2) {
-		String [] str1 = sig1.split("-");
-		String [] str2 = sig2.split("-");
-
-		if (str1.length != str2.length)
-			return false;
-
-		for (int i = 0; i < str1.length; i += 1) {
-			if (!str1[i].equals(str2[i])) {
-				if (!str1[i].equals(("null")) && !str2[i].equals("null"))
-					return false;
-			}
-		}
-		return true;
+		return MethodSignature.parse(sig1).matches(MethodSignature.parse(sig2));
 	}
 
 	public static String getMethodSig(BodyDeclaration n) {
-		String sig;
-		List<Parameter> params;
-
-		if (n instanceof MethodDeclaration) {
-			sig = ((MethodDeclaration) n).getName();
-			params = ((MethodDeclaration) n).getParameters();
-		}
-		else {
-			sig = ((ConstructorDeclaration) n).getName();
-			params = ((ConstructorDeclaration) n).getParameters();
-		}
-
-		if (!Utils.isNullOrEmpty(params)) {
-			for (final Parameter p : params)
-				sig += "-" + p.getType().toString();
-		}
-		return sig;
+		return MethodSignature.of(n).toString();
 	}
 
 	public static String getMethodSig(Expression n, Map<String, Type> typeEnv, ClassModel model) {
@@ -247,31 +294,10 @@ public class Util {
 		return sig;
 	}
 
+	// Look up a method by building the method index of the class declaration.
+	// Use ClassModel.getMethodIndex() for repeated lookups in the same class.
 	public static BodyDeclaration getMethodDeclarationBySig(ClassOrInterfaceDeclaration classDecl, String targetSig) {
-		List<BodyDeclaration> members = classDecl.getMembers();
-		for (BodyDeclaration member : members) {
-			if (member instanceof MethodDeclaration) {
-				MethodDeclaration method = (MethodDeclaration) member;
-				String sig = method.getName();
-				if (!Utils.isNullOrEmpty(method.getParameters())) {
-					for (final Parameter p : method.getParameters())
-						sig += "-" + p.getType().toString();
-				}
-				if (isSameMethodSig(sig, targetSig))
-					return method;
-			}
-			else if (member instanceof ConstructorDeclaration) {
-				ConstructorDeclaration method = (ConstructorDeclaration) member;
-				String sig = method.getName();
-				if (!Utils.isNullOrEmpty(method.getParameters())) {
-					for (final Parameter p : method.getParameters())
-						sig += "-" + p.getType().toString();
-				}
-				if (isSameMethodSig(sig, targetSig))
-					return method;
-			}
-		}
-		return null;
+		return new MethodIndex(classDecl).get(targetSig);
 	}
 
 	public static ClassOrInterfaceDeclaration getClassOrInterfaceDeclarationByName(CompilationUnit cu, String targetName) {
@@ -13,6 +13,7 @@ import org.apache.j2ir.model.VoidClassModel;
 import org.apache.j2ir.utils.J2IRLogger;
 import org.apache.j2ir.utils.Util;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
@@ -22,10 +23,22 @@ public class MethodVisitor extends VoidVisitorAdapter<MethodModel> {
 	private final static Logger logger = (new J2IRLogger()).logger;
 	private final Map<String, ClassModel> usedClasses;
 
+	// Classes and methods referred by the visited method
+	private final List<ClassModel> discoveredClasses = new ArrayList<>();
+	private final List<MethodModel> discoveredMethods = new ArrayList<>();
+
 	public MethodVisitor(Map<String, ClassModel> usedClasses) {
 		this.usedClasses = usedClasses;
 	}
 
+	public List<ClassModel> getDiscoveredClasses() {
+		return discoveredClasses;
+	}
+
+	public List<MethodModel> getDiscoveredMethods() {
+		return discoveredMethods;
+	}
+
 	private ClassModel getOrAddClass(String className) {
 		ClassModel model;
 		if (!usedClasses.containsKey(className)) {
@@ -34,6 +47,7 @@ public class MethodVisitor extends VoidVisitorAdapter<MethodModel> {
 			else
 				model = new ClassModel(className);
 			usedClasses.put(className, model);
+			discoveredClasses.add(model);
 		} else
 			model = usedClasses.get(className);
 
@@ -42,7 +56,7 @@ public class MethodVisitor extends VoidVisitorAdapter<MethodModel> {
 
 	private void addMethod(String className, Expression n, Map<String, Type> typeEnv) {
 		ClassModel classModel = getOrAddClass(className);
-		classModel.addMethod(n, typeEnv);
+		discoveredMethods.add(classModel.addMethod(n, typeEnv));
 	}
 
 	@Override
@@ -65,27 +79,31 @@ public class MethodVisitor extends VoidVisitorAdapter<MethodModel> {
 	@Override
 	public void visit(FieldAccessExpr n, MethodModel model) {
 		String name = n.getFieldExpr().getName();
-		Type type = model.getTypeEnv().get(name);
-		if (type == null) {
-			// Try to find the field from base classes
-			for (ClassModel base : model.getClassModel().getBaseClasses()) {
-				type = base.getTypeEnv().get(name);
-				if (type != null) {
-					base.addField(type, name);
-					break;
-				}
-			}
-			if (type == null) {
-				throw new RuntimeException("Cannot find field " + name + " in "
-						+ model.getName() + " and its base classes");
-			}
-		} else
-			model.getClassModel().addField(type, name);
+
+		// Fields are in the class scope, so locals of the method do not shadow them
+		ClassModel owner = findFieldOwner(model.getClassModel(), name);
+		if (owner == null) {
+			throw new RuntimeException("Cannot find field " + name + " in "
+					+ model.getName() + " and its base classes");
+		}
+		owner.addField(owner.getTypeEnv().get(name), name);
 
 		n.getScope().accept(this, model);
 		n.getFieldExpr().accept(this, model);
 	}
 
+	// Return the class or the nearest base class which declares the field
+	private ClassModel findFieldOwner(ClassModel classModel, String name) {
+		if (classModel.getTypeEnv().get(name) != null)
+			return classModel;
+		for (ClassModel base : classModel.getBaseClasses()) {
+			ClassModel owner = findFieldOwner(base, name);
+			if (owner != null)
+				return owner;
+		}
+		return null;
+	}
+
 	@Override
 	public void visit(VariableDeclarationExpr n, MethodModel model) {
 
@@ -110,7 +128,7 @@ public class MethodVisitor extends VoidVisitorAdapter<MethodModel> {
 
 		if (type instanceof ClassOrInterfaceType) {
 			String className = ((ClassOrInterfaceType) type).getName();
-			addMethod(className, n, model.getTypeEnv());
+			addMethod(className, n, model.getTypeEnv(n));
 		}
 	}
 
@@ -138,13 +156,13 @@ public class MethodVisitor extends VoidVisitorAdapter<MethodModel> {
 		args = n.getArgs();
 		if (args.size() != 0) {
 			for (final Expression e : args) {
-				Type type = Util.getExpType(e, model.getTypeEnv(), model.getClassModel());
+				Type type = Util.getExpType(e, model.getTypeEnv(n), model.getClassModel());
 				if (type == null)
 					throw new RuntimeException("Cannot infer type for " + e.toString());
 				sig += "-" + type.toString();
 			}
 		}
-		classModel.addMethod(sig);
+		discoveredMethods.add(classModel.addMethod(sig));
 	}
 
 	@Override
@@ -161,7 +179,7 @@ public class MethodVisitor extends VoidVisitorAdapter<MethodModel> {
 
 		if (caller == null || caller instanceof ThisExpr) {
 			// Method in the same class
-			model.getClassModel().addMethod(n, model.getTypeEnv());
+			discoveredMethods.add(model.getClassModel().addMethod(n, model.getTypeEnv(n)));
 		} else {
 			// Method in the other class
 			String varName;
@@ -175,11 +193,11 @@ public class MethodVisitor extends VoidVisitorAdapter<MethodModel> {
 			} else
 				throw new RuntimeException("Expect FieldAccessExpr, but found " + caller.toString());
 
-			Type type = model.getTypeEnv().get(varName);
+			Type type = model.getTypeEnv(n).get(varName);
 			if (type == null)
 				throw new RuntimeException("Cannot find variable " + varName + " in "
 						+ model.getName());
-			addMethod(type.toString(), n, model.getTypeEnv());
+			addMethod(type.toString(), n, model.getTypeEnv(n));
 		}
 
 		if (n.getScope() != null)
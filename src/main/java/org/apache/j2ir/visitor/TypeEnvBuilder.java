@@ -2,19 +2,37 @@ package org.apache.j2ir.visitor;
 
 import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.body.*;
+import com.github.javaparser.ast.expr.Expression;
 import com.github.javaparser.ast.expr.VariableDeclarationExpr;
+import com.github.javaparser.ast.stmt.BlockStmt;
+import com.github.javaparser.ast.stmt.CatchClause;
+import com.github.javaparser.ast.stmt.ForStmt;
+import com.github.javaparser.ast.stmt.ForeachStmt;
+import com.github.javaparser.ast.stmt.Statement;
 import com.github.javaparser.ast.type.ClassOrInterfaceType;
-import com.github.javaparser.ast.type.Type;
 import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
+import org.apache.j2ir.model.SymbolTable;
 
+import java.util.IdentityHashMap;
 import java.util.Map;
 
-public class TypeEnvBuilder extends VoidVisitorAdapter<Map<String, Type>> {
+/*
+	TypeEnvBuilder declares the fields of a class or the parameters and the local
+	variables of a method in a symbol table. Each block, for loop and catch clause
+	pushes a scope over the enclosing one, so the variables declared in sibling
+	blocks do not share a scope, and the scope is popped when the visit leaves the
+	node. The scopes are kept by node (see getScopes) to infer the types of the
+	expressions inside them.
+ */
+public class TypeEnvBuilder extends VoidVisitorAdapter<SymbolTable> {
 
 	// Scope of the program that we will build the type environment.
 	// Must be either class or method declaration.
 	private final BodyDeclaration scope;
 
+	// Scopes of the blocks, loops and catch clauses
+	private final Map<Node, SymbolTable> scopes = new IdentityHashMap<>();
+
 	public TypeEnvBuilder(Node n) {
 		if (n instanceof ClassOrInterfaceDeclaration)
 			scope = (ClassOrInterfaceDeclaration) n;
@@ -24,7 +42,7 @@ public class TypeEnvBuilder extends VoidVisitorAdapter<Map<String, Type>> {
 			throw new RuntimeException("Invalid scope: " + n.toString());
 	}
 
-	public void build(Map<String, Type> env) {
+	public void build(SymbolTable env) {
 
 		// Add synthetic variable "SYNTHETIC_MODULE" for singleton object accessing.
 		if (!env.containsKey("SYNTHETIC_MODULE"))
@@ -38,8 +56,19 @@ public class TypeEnvBuilder extends VoidVisitorAdapter<Map<String, Type>> {
 			visit((ConstructorDeclaration) scope, env);
 	}
 
+	// Return the scopes pushed by the nodes of the last build
+	public Map<Node, SymbolTable> getScopes() {
+		return scopes;
+	}
+
+	private SymbolTable push(Node n, SymbolTable env) {
+		SymbolTable inner = env.push();
+		scopes.put(n, inner);
+		return inner;
+	}
+
 	@Override
-	public void visit(ClassOrInterfaceDeclaration n, Map<String, Type> env) {
+	public void visit(ClassOrInterfaceDeclaration n, SymbolTable env) {
 		if (n != scope)
 			return;
 
@@ -49,7 +78,7 @@ public class TypeEnvBuilder extends VoidVisitorAdapter<Map<String, Type>> {
 	}
 
 	@Override
-	public void visit(MethodDeclaration n, Map<String, Type> env) {
+	public void visit(MethodDeclaration n, SymbolTable env) {
 		if (scope != n)
 			return;
 
@@ -65,18 +94,70 @@ public class TypeEnvBuilder extends VoidVisitorAdapter<Map<String, Type>> {
 	}
 
 	@Override
-	public void visit(FieldDeclaration n, Map<String, Type> env) {
+	public void visit(ConstructorDeclaration n, SymbolTable env) {
+		if (scope != n)
+			return;
+
+		if (n.getParameters() != null) {
+			for (final Parameter p : n.getParameters())
+				p.accept(this, env);
+		}
+		n.getBlock().accept(this, env);
+	}
+
+	@Override
+	public void visit(BlockStmt n, SymbolTable env) {
+		SymbolTable inner = push(n, env);
+		if (n.getStmts() != null) {
+			for (final Statement s : n.getStmts())
+				s.accept(this, inner);
+		}
+	}
+
+	@Override
+	public void visit(ForStmt n, SymbolTable env) {
+		SymbolTable inner = push(n, env);
+		if (n.getInit() != null) {
+			for (final Expression e : n.getInit())
+				e.accept(this, inner);
+		}
+		if (n.getCompare() != null)
+			n.getCompare().accept(this, inner);
+		if (n.getUpdate() != null) {
+			for (final Expression e : n.getUpdate())
+				e.accept(this, inner);
+		}
+		n.getBody().accept(this, inner);
+	}
+
+	@Override
+	public void visit(ForeachStmt n, SymbolTable env) {
+		n.getIterable().accept(this, env);
+		SymbolTable inner = push(n, env);
+		n.getVariable().accept(this, inner);
+		n.getBody().accept(this, inner);
+	}
+
+	@Override
+	public void visit(CatchClause n, SymbolTable env) {
+		SymbolTable inner = push(n, env);
+		n.getParam().accept(this, inner);
+		n.getCatchBlock().accept(this, inner);
+	}
+
+	@Override
+	public void visit(FieldDeclaration n, SymbolTable env) {
 		for (final VariableDeclarator var : n.getVariables())
 			env.put(var.getId().getName(), n.getType());
 	}
 
 	@Override
-	public void visit(Parameter n, Map<String, Type> env) {
+	public void visit(Parameter n, SymbolTable env) {
 		env.put(n.getId().getName(), n.getType());
 	}
 
 	@Override
-	public void visit(VariableDeclarationExpr n, Map<String, Type> env) {
+	public void visit(VariableDeclarationExpr n, SymbolTable env) {
 		for (final VariableDeclarator var : n.getVars())
 			env.put(var.getId().getName(), n.getType());
 	}
@@ -6,6 +6,7 @@ import com.github.javaparser.ast.expr.*;
 import com.github.javaparser.ast.type.*;
 import org.apache.j2ir.model.ClassModel;
 import org.apache.j2ir.model.MethodModel;
+import org.apache.j2ir.model.SymbolTable;
 import org.apache.j2ir.utils.J2IRLogger;
 import org.apache.j2ir.utils.Util;
 
@@ -20,72 +21,17 @@ public class TypeVisitor extends GenericVisitorAdapter<Type, Map<String, Type>>
 		classModel = model;
 	}
 
+	// Infer the type of an expression. The types are cached in the symbol table
+	// (if the environment is one) so that an expression is inferred once per scope.
 	public Type visit(final Expression n, final Map<String, Type> arg) {
-		if (n instanceof ArrayAccessExpr)
-			return visit((ArrayAccessExpr) n, arg);
-		else if (n instanceof ArrayCreationExpr)
-			return visit((ArrayCreationExpr) n, arg);
-		else if (n instanceof ArrayInitializerExpr)
-			return visit((ArrayInitializerExpr) n, arg);
-		else if (n instanceof AssignExpr)
-			return visit((AssignExpr) n, arg);
-		else if (n instanceof BinaryExpr)
-			return visit((BinaryExpr) n, arg);
-		else if (n instanceof BooleanLiteralExpr)
-			return visit((BooleanLiteralExpr) n, arg);
-		else if (n instanceof CastExpr)
-			return visit((CastExpr) n, arg);
-		else if (n instanceof CharLiteralExpr)
-			return visit((CharLiteralExpr) n, arg);
-		else if (n instanceof ClassExpr)
-			return visit((ClassExpr) n, arg);
-		else if (n instanceof ConditionalExpr)
-			return visit((ConditionalExpr) n, arg);
-		else if (n instanceof DoubleLiteralExpr)
-			return visit((DoubleLiteralExpr) n, arg);
-		else if (n instanceof EnclosedExpr)
-			return visit((EnclosedExpr) n, arg);
-		else if (n instanceof FieldAccessExpr)
-			return visit((FieldAccessExpr) n, arg);
-		else if (n instanceof InstanceOfExpr)
-			return visit((InstanceOfExpr) n, arg);
-		else if (n instanceof IntegerLiteralExpr)
-			return visit((IntegerLiteralExpr) n, arg);
-		else if (n instanceof LongLiteralExpr)
-			return visit((LongLiteralExpr) n, arg);
-		else if (n instanceof MarkerAnnotationExpr)
-			return visit((MarkerAnnotationExpr) n, arg);
-		else if (n instanceof MethodCallExpr)
-			return visit((MethodCallExpr) n, arg);
-		else if (n instanceof QualifiedNameExpr)
-			return visit((QualifiedNameExpr) n, arg);
-		else if (n instanceof NameExpr)
-			return visit((NameExpr) n, arg);
-		else if (n instanceof NormalAnnotationExpr)
-			return visit((NormalAnnotationExpr) n, arg);
-		else if (n instanceof NullLiteralExpr)
-			return visit((NullLiteralExpr) n, arg);
-		else if (n instanceof ObjectCreationExpr)
-			return visit((ObjectCreationExpr) n, arg);
-		else if (n instanceof StringLiteralExpr)
-			return visit((StringLiteralExpr) n, arg);
-		else if (n instanceof SuperExpr)
-			return visit((SuperExpr) n, arg);
-		else if (n instanceof ThisExpr)
-			return visit((ThisExpr) n, arg);
-		else if (n instanceof UnaryExpr)
-			return visit((UnaryExpr) n, arg);
-		else if (n instanceof VariableDeclarationExpr)
-			return visit((VariableDeclarationExpr) n, arg);
-		else if (n instanceof LambdaExpr)
-			return visit((LambdaExpr) n, arg);
-		else if (n instanceof MethodReferenceExpr)
-			return visit((MethodReferenceExpr) n, arg);
-		else if (n instanceof TypeExpr)
-			return visit((TypeExpr) n, arg);
+		Map<Expression, Type> cache = (arg instanceof SymbolTable) ? ((SymbolTable) arg).getTypeCache() : null;
+		if (cache != null && cache.containsKey(n))
+			return cache.get(n);
 
-		logger.warning("Cannot infer expression type: " + n.toString());
-		return null;
+		Type type = n.accept(this, arg);
+		if (cache != null)
+			cache.put(n, type);
+		return type;
 	}
 
 	@Override
@@ -105,7 +51,7 @@ public class TypeVisitor extends GenericVisitorAdapter<Type, Map<String, Type>>
 	@Override
 	public Type visit(final ArrayInitializerExpr n, final Map<String, Type> arg) {
 		assert (n.getValues() != null);
-		return n.getValues().get(0).accept(this, arg);
+		return visit(n.getValues().get(0), arg);
 	}
 
 	@Override
@@ -115,8 +61,8 @@ public class TypeVisitor extends GenericVisitorAdapter<Type, Map<String, Type>>
 
 	@Override
 	public Type visit(final BinaryExpr n, final Map<String, Type> arg) {
-		Type tLeft = n.getLeft().accept(this, arg);
-		Type tRight = n.getRight().accept(this, arg);
+		Type tLeft = visit(n.getLeft(), arg);
+		Type tRight = visit(n.getRight(), arg);
 		if (tLeft == tRight)
 			return tLeft;
 		else if (tLeft.toString().equals("double") || tLeft.toString().equals("double"))
@@ -168,7 +114,7 @@ public class TypeVisitor extends GenericVisitorAdapter<Type, Map<String, Type>>
 
 	@Override
 	public Type visit(final EnclosedExpr n, final Map<String, Type> arg) {
-		return n.getInner().accept(this, arg);
+		return visit(n.getInner(), arg);
 	}
 
 	@Override
@@ -212,7 +158,7 @@ public class TypeVisitor extends GenericVisitorAdapter<Type, Map<String, Type>>
 
 	@Override
 	public Type visit(final MemberValuePair n, final Map<String, Type> arg) {
-		return n.getValue().accept(this, arg);
+		return visit(n.getValue(), arg);
 	}
 
 	@Override
@@ -242,6 +188,12 @@ public class TypeVisitor extends GenericVisitorAdapter<Type, Map<String, Type>>
 		return new VoidType();
 	}
 
+	@Override
+	public Type visit(final SingleMemberAnnotationExpr n, final Map<String, Type> arg) {
+		logger.warning("Cannot infer expression type: " + n.toString());
+		return null;
+	}
+
 	@Override
 	public Type visit(final NullLiteralExpr n, final Map<String, Type> arg) {
 		return new ClassOrInterfaceType("null");
@@ -287,18 +239,18 @@ public class TypeVisitor extends GenericVisitorAdapter<Type, Map<String, Type>>
 
 	@Override
 	public Type visit(final SuperExpr n, final Map<String, Type> arg) {
-		return n.getClassExpr().accept(this, arg);
+		return visit(n.getClassExpr(), arg);
 	}
 
 	@Override
 	public Type visit(final ThisExpr n, final Map<String, Type> arg) {
 		assert (n.getClassExpr() != null);
-		return n.getClassExpr().accept(this, arg);
+		return visit(n.getClassExpr(), arg);
 	}
 
 	@Override
 	public Type visit(final UnaryExpr n, final Map<String, Type> arg) {
-		return n.getExpr().accept(this, arg);
+		return visit(n.getExpr(), arg);
 	}
 
 	@Override
@@ -0,0 +1,586 @@
+package org.apache.j2ir.writer;
+
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.BodyDeclaration;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.Parameter;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.ast.expr.ArrayAccessExpr;
+import com.github.javaparser.ast.expr.ArrayCreationExpr;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.IntegerLiteralExpr;
+import com.github.javaparser.ast.expr.LambdaExpr;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.expr.NameExpr;
+import com.github.javaparser.ast.expr.ObjectCreationExpr;
+import com.github.javaparser.ast.expr.ThisExpr;
+import com.github.javaparser.ast.expr.VariableDeclarationExpr;
+import com.github.javaparser.ast.stmt.ReturnStmt;
+import com.github.javaparser.ast.type.ReferenceType;
+import com.github.javaparser.ast.type.Type;
+import org.apache.j2ir.utils.J2IRLogger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/*
+	ArrayLayout decides how the arrays of a class are laid out in the C++ code.
+
+	A local array whose size is known (from its length attribute or integer
+	literals) is declared in place unless it escapes through a return value.
+	The kernel method writes its returned local array to a caller buffer.
+
+	Unless the order is "none", the rectangular multidimensional arrays are
+	flattened to one contiguous buffer indexed in row-major ("row") or
+	column-major ("column") order. The fastest varying dimension is padded
+	to a multiple of the padding. The candidates are the fixed-size local
+	arrays and the kernel parameters with a length attribute, and the
+	parameters of the methods of the class which they are passed to.
+	An array stays multidimensional if any of its uses cannot be rewritten:
+	an access of a partial row, an assignment, a call of another class, a
+	partition which has no equivalent on the flattened array, etc.
+
+	The ports (the kernel parameters and the array written to the caller
+	buffer) are laid out by the host, so they and the parameters which they
+	are passed to are flattened in row-major order without padding. The order
+	and the padding only apply to the internal arrays. A parameter which
+	receives both a port and an internal array stays multidimensional.
+ */
+public class ArrayLayout {
+	final private static Logger logger = (new J2IRLogger()).logger;
+
+	final public static String ROW_MAJOR = "row";
+	final public static String COLUMN_MAJOR = "column";
+	final public static String NONE = "none";
+
+	private final Map<String, Map<String, String>> attr;
+	private final String order;
+	private final int padding;
+	private final MethodDeclaration kernel;
+	private String[] kernelRetDims = null;
+	private boolean candidatesAdded = false;
+
+	// Dimensions of the local arrays declared in place
+	private final Map<VariableDeclarator, String[]> staticDims = new IdentityHashMap<>();
+
+	// Dimensions of the flattened arrays (parameters and locals) by method and name
+	private final Map<MethodDeclaration, Map<String, String[]>> flattened = new IdentityHashMap<>();
+
+	// Names of the flattened arrays with the layout of the ports by method
+	private final Map<MethodDeclaration, Set<String>> ports = new IdentityHashMap<>();
+
+	public ArrayLayout(ClassOrInterfaceDeclaration classDecl, MethodDeclaration kernel,
+			Map<String, Map<String, String>> attr, String order, int padding) {
+		if (!order.equals(ROW_MAJOR) && !order.equals(COLUMN_MAJOR) && !order.equals(NONE))
+			throw new RuntimeException("Unknown array layout " + order);
+		if (padding < 1)
+			throw new RuntimeException("Invalid array padding " + padding);
+		this.attr = attr;
+		this.order = order;
+		this.padding = padding;
+		this.kernel = kernel;
+
+		if (kernel != null)
+			kernelRetDims = computeKernelRetDims(kernel);
+		collectStaticArrays(classDecl);
+		if (!order.equals(NONE))
+			flatten(classDecl);
+	}
+
+	// Return the dimensions of the caller buffer of the kernel, or null if the kernel returns its value
+	public String[] getKernelRetDims() {
+		if (kernelRetDims == null)
+			return null;
+		for (ReturnStmt r : getReturnStmts(kernel.getBody())) {
+			String name = ((NameExpr) r.getExpr()).getName();
+			String[] dims = getDims(kernel, name);
+			if (dims != null)
+				return new String[] {getSize(kernel, name, dims)};
+		}
+		return kernelRetDims;
+	}
+
+	// Return the dimensions of a local array declared in place, or null if it is allocated
+	public String[] getDeclaredDims(VariableDeclarator var) {
+		String[] dims = staticDims.get(var);
+		if (dims == null)
+			return null;
+		MethodDeclaration method = getMethod(var);
+		String name = var.getId().getName();
+		if (method != null && getDims(method, name) != null)
+			return new String[] {getSize(method, name, dims)};
+		return dims;
+	}
+
+	// Return the dimensions of a flattened array of a method, or null if it is not flattened
+	public String[] getDims(MethodDeclaration method, String name) {
+		Map<String, String[]> arrays = flattened.get(method);
+		return (arrays == null) ? null : arrays.get(name);
+	}
+
+	public boolean isColumnMajor() {
+		return order.equals(COLUMN_MAJOR);
+	}
+
+	// Check if a flattened array of a method has the layout of the ports
+	public boolean isPort(MethodDeclaration method, String name) {
+		return ports.containsKey(method) && ports.get(method).contains(name);
+	}
+
+	// Check if a flattened array of a method is indexed in column-major order
+	public boolean isColumnMajor(MethodDeclaration method, String name) {
+		return isColumnMajor() && !isPort(method, name);
+	}
+
+	// Return the dimensions of a flattened array of a method as laid out, slowest varying first
+	public String[] getPaddedDims(MethodDeclaration method, String name, String[] dims) {
+		return isPort(method, name) ? dims.clone() : getPaddedDims(dims);
+	}
+
+	// Return the number of elements of a flattened array of a method
+	public String getSize(MethodDeclaration method, String name, String[] dims) {
+		return getSizeOf(getPaddedDims(method, name, dims));
+	}
+
+	// Return the dimensions of an internal flattened array with the padding, slowest varying first
+	public String[] getPaddedDims(String[] dims) {
+		String[] padded = dims.clone();
+		if (isColumnMajor())
+			Collections.reverse(Arrays.asList(padded));
+		int last = padded.length - 1;
+		if (padding > 1 && padded[last].matches("\\d+")) {
+			long d = Long.parseLong(padded[last]);
+			padded[last] = String.valueOf((d + padding - 1) / padding * padding);
+		}
+		return padded;
+	}
+
+	// Return the number of elements of an internal flattened array
+	public String getSize(String[] dims) {
+		return getSizeOf(getPaddedDims(dims));
+	}
+
+	private static String getSizeOf(String[] padded) {
+		long size = 1;
+		for (String d : padded) {
+			if (!d.matches("\\d+"))
+				return String.join(" * ", padded);
+			size *= Long.parseLong(d);
+		}
+		return String.valueOf(size);
+	}
+
+	// Return the attributes of a flattened array with its partition mapped to the single dimension
+	public Map<String, String> getFlattenedAttr(MethodDeclaration method, String name, String[] dims) {
+		Map<String, String> varAttr = new HashMap<>();
+		if (attr.containsKey(name))
+			varAttr.putAll(attr.get(name));
+		varAttr.put("length", getSize(method, name, dims));
+		varAttr.remove(ArrayPartition.DIM);
+		if (varAttr.containsKey(ArrayPartition.PARTITION))
+			varAttr.put(ArrayPartition.DIM, "1");
+		return varAttr;
+	}
+
+	// Check if the partition of an array keeps its banks when the array is flattened:
+	// cyclic on the fastest and block on the slowest dimension when the length is a
+	// multiple of the factor, or complete on all the dimensions
+	private boolean isPartitionFlattenable(MethodDeclaration method, String name, String[] dims) {
+		if (ArrayPartition.getPragma(name, attr.get(name), dims.length) == null)
+			return true;
+		Map<String, String> varAttr = attr.get(name);
+		String type = varAttr.get(ArrayPartition.PARTITION).trim();
+		int dim = varAttr.containsKey(ArrayPartition.DIM) ? Integer.parseInt(varAttr.get(ArrayPartition.DIM).trim()) : 1;
+		if (type.equals("complete"))
+			return dim == 0;
+		if (!varAttr.containsKey(ArrayPartition.FACTOR) || dim == 0)
+			return false;
+
+		long factor = Long.parseLong(varAttr.get(ArrayPartition.FACTOR).trim());
+		String[] padded = getPaddedDims(method, name, dims);
+		int fastest = isColumnMajor(method, name) ? 1 : dims.length;
+		int slowest = isColumnMajor(method, name) ? dims.length : 1;
+		String length;
+		if (type.equals("cyclic") && dim == fastest)
+			length = padded[padded.length - 1];
+		else if (type.equals("block") && dim == slowest)
+			length = padded[0];
+		else
+			return false;
+		return length.matches("\\d+") && Long.parseLong(length) % factor == 0;
+	}
+
+	private String[] computeKernelRetDims(MethodDeclaration n) {
+		if (getArrayDims(n.getType()) == 0 || n.getBody() == null)
+			return null;
+
+		String[] dims = null;
+		for (ReturnStmt r : getReturnStmts(n.getBody())) {
+			VariableDeclarator var = (r.getExpr() instanceof NameExpr) ?
+					findLocalVariable(n.getBody(), ((NameExpr) r.getExpr()).getName()) : null;
+			String[] varDims = (var == null) ? null : getStaticDims(attr, var);
+			if (varDims == null || (dims != null && !Arrays.equals(dims, varDims))) {
+				logger.warning("Kernel method " + n.getName() + " does not return a local array of a fixed size, "
+						+ "return a pointer instead of writing to the caller buffer");
+				return null;
+			}
+			dims = varDims;
+		}
+		return dims;
+	}
+
+	// A local array is declared in place if its size is known and it does not escape
+	// through the return value, unless the kernel method writes it to the caller buffer
+	private void collectStaticArrays(Node n) {
+		if (n instanceof VariableDeclarationExpr && ((VariableDeclarationExpr) n).getVars().size() == 1) {
+			VariableDeclarator var = ((VariableDeclarationExpr) n).getVars().get(0);
+			String[] dims = getStaticDims(attr, var);
+			MethodDeclaration method = getMethod(var);
+			if (dims != null && !(method == kernel && kernelRetDims != null) && method != null) {
+				for (ReturnStmt r : getReturnStmts(method)) {
+					if (r.getExpr() != null && escapes(r.getExpr(), var.getId().getName(), dims.length)) {
+						dims = null;
+						break;
+					}
+				}
+			}
+			if (dims != null)
+				staticDims.put(var, dims);
+		}
+		for (Node child : n.getChildrenNodes())
+			collectStaticArrays(child);
+	}
+
+	private void flatten(ClassOrInterfaceDeclaration classDecl) {
+		List<MethodDeclaration> methods = new ArrayList<>();
+		for (BodyDeclaration member : classDecl.getMembers()) {
+			if (member instanceof MethodDeclaration && ((MethodDeclaration) member).getBody() != null)
+				methods.add((MethodDeclaration) member);
+		}
+
+		// Seed the fixed-size local arrays and the kernel parameters with a length attribute.
+		// The parameters and the array written to the caller buffer are ports.
+		for (Map.Entry<VariableDeclarator, String[]> e : staticDims.entrySet()) {
+			MethodDeclaration method = getMethod(e.getKey());
+			String name = e.getKey().getId().getName();
+			if (e.getValue().length > 1 && methods.contains(method))
+				addCandidate(method, name, e.getValue(), method == kernel && isReturned(kernel, name));
+		}
+		if (kernel != null && methods.contains(kernel) && kernel.getParameters() != null) {
+			for (Parameter p : kernel.getParameters()) {
+				int numDims = getArrayDims(p.getType()) + p.getId().getArrayCount();
+				String name = p.getId().getName();
+				if (numDims < 2 || !attr.containsKey(name) || !attr.get(name).containsKey("length"))
+					continue;
+				String[] dims = getLengths(attr, name, numDims);
+				addCandidate(kernel, name, dims, true);
+			}
+		}
+
+		// Drop the arrays with a use which cannot be rewritten until the candidates are stable
+		Map<MethodDeclaration, Map<String, String[]>> rejected = new IdentityHashMap<>();
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (MethodDeclaration method : new ArrayList<>(flattened.keySet())) {
+				for (Map.Entry<String, String[]> e : new ArrayList<>(flattened.get(method).entrySet())) {
+					if (isFlattenable(method, e.getKey(), e.getValue(), methods, rejected))
+						continue;
+					logger.fine("Keep the layout of array " + e.getKey() + " of method " + method.getName());
+					flattened.get(method).remove(e.getKey());
+					if (ports.containsKey(method))
+						ports.get(method).remove(e.getKey());
+					addTo(rejected, method, e.getKey(), e.getValue());
+					changed = true;
+				}
+			}
+			changed |= candidatesAdded;
+			candidatesAdded = false;
+		}
+	}
+
+	private void addCandidate(MethodDeclaration method, String name, String[] dims, boolean port) {
+		addTo(flattened, method, name, dims);
+
+		// The ports only need their own layout when it differs from the one of the internal arrays
+		if (port && (isColumnMajor() || padding > 1)) {
+			if (!ports.containsKey(method))
+				ports.put(method, new HashSet<String>());
+			ports.get(method).add(name);
+		}
+		candidatesAdded = true;
+	}
+
+	// Check if the kernel method returns the array to the caller buffer
+	private boolean isReturned(MethodDeclaration method, String name) {
+		if (kernelRetDims == null)
+			return false;
+		for (ReturnStmt r : getReturnStmts(method.getBody())) {
+			if (r.getExpr() instanceof NameExpr && ((NameExpr) r.getExpr()).getName().equals(name))
+				return true;
+		}
+		return false;
+	}
+
+	private static void addTo(Map<MethodDeclaration, Map<String, String[]>> arrays, MethodDeclaration method,
+			String name, String[] dims) {
+		if (!arrays.containsKey(method))
+			arrays.put(method, new HashMap<String, String[]>());
+		arrays.get(method).put(name, dims);
+	}
+
+	private static boolean contains(Map<MethodDeclaration, Map<String, String[]>> arrays, MethodDeclaration method,
+			String name) {
+		return arrays.containsKey(method) && arrays.get(method).containsKey(name);
+	}
+
+	private boolean isFlattenable(MethodDeclaration method, String name, String[] dims,
+			List<MethodDeclaration> methods, Map<MethodDeclaration, Map<String, String[]>> rejected) {
+		if (countDeclarations(method, name) != 1 || !isPartitionFlattenable(method, name, dims))
+			return false;
+
+		// Every use of the array must be a full access, a return to the caller buffer
+		// or an argument of a method of the class whose parameter is flattened with the same layout
+		for (NameExpr use : findNames(method.getBody(), name)) {
+			Node parent = use.getParentNode();
+			if (parent instanceof ArrayAccessExpr) {
+				if (getAccessDepth(use) != dims.length)
+					return false;
+			} else if (parent instanceof ReturnStmt) {
+				if (method != kernel || kernelRetDims == null)
+					return false;
+			} else if (parent instanceof MethodCallExpr && indexOf(((MethodCallExpr) parent).getArgs(), use) >= 0) {
+				MethodCallExpr call = (MethodCallExpr) parent;
+				MethodDeclaration callee = resolve(call, methods);
+				int index = indexOf(call.getArgs(), use);
+				if (callee == null || callee == kernel)
+					return false;
+				Parameter p = callee.getParameters().get(index);
+				String pName = p.getId().getName();
+				if (getArrayDims(p.getType()) + p.getId().getArrayCount() != dims.length
+						|| contains(rejected, callee, pName))
+					return false;
+				String[] calleeDims = getDims(callee, pName);
+				if (calleeDims == null)
+					addCandidate(callee, pName, dims, isPort(method, name));
+				else if (!Arrays.equals(calleeDims, dims) || isPort(callee, pName) != isPort(method, name))
+					return false;
+			} else {
+				return false;
+			}
+		}
+
+		// A parameter must receive flattened arrays of the same dimensions and layout at all the call sites
+		if (method != kernel && isParameter(method, name)) {
+			int index = getParameterIndex(method, name);
+			boolean called = false;
+			for (MethodDeclaration caller : methods) {
+				for (MethodCallExpr call : findCalls(caller.getBody(), method.getName())) {
+					if (resolve(call, methods) != method)
+						continue;
+					called = true;
+					Expression argument = call.getArgs().get(index);
+					if (!(argument instanceof NameExpr))
+						return false;
+					String argName = ((NameExpr) argument).getName();
+					String[] argDims = getDims(caller, argName);
+					if (argDims == null || !Arrays.equals(argDims, dims) || isPort(caller, argName) != isPort(method, name))
+						return false;
+				}
+			}
+			if (!called)
+				return false;
+		}
+		return true;
+	}
+
+	// Resolve a call of a method of the class by its name and number of arguments
+	private static MethodDeclaration resolve(MethodCallExpr call, List<MethodDeclaration> methods) {
+		if (call.getScope() != null && !(call.getScope() instanceof ThisExpr))
+			return null;
+		int numArgs = (call.getArgs() == null) ? 0 : call.getArgs().size();
+		MethodDeclaration callee = null;
+		for (MethodDeclaration m : methods) {
+			int numParams = (m.getParameters() == null) ? 0 : m.getParameters().size();
+			if (m.getName().equals(call.getName()) && numParams == numArgs) {
+				if (callee != null)
+					return null;
+				callee = m;
+			}
+		}
+		return callee;
+	}
+
+	private static int indexOf(List<Expression> list, Expression e) {
+		if (list == null)
+			return -1;
+		for (int i = 0; i < list.size(); i += 1) {
+			if (list.get(i) == e)
+				return i;
+		}
+		return -1;
+	}
+
+	private static boolean isParameter(MethodDeclaration method, String name) {
+		return getParameterIndex(method, name) >= 0;
+	}
+
+	private static int getParameterIndex(MethodDeclaration method, String name) {
+		if (method.getParameters() != null) {
+			for (int i = 0; i < method.getParameters().size(); i += 1) {
+				if (method.getParameters().get(i).getId().getName().equals(name))
+					return i;
+			}
+		}
+		return -1;
+	}
+
+	// Count the parameters and local variables of a method with the name
+	private static int countDeclarations(MethodDeclaration method, String name) {
+		int count = isParameter(method, name) ? 1 : 0;
+		List<Node> nodes = new ArrayList<>();
+		nodes.add(method.getBody());
+		while (!nodes.isEmpty()) {
+			Node n = nodes.remove(nodes.size() - 1);
+			if (n instanceof VariableDeclarator && ((VariableDeclarator) n).getId().getName().equals(name))
+				count += 1;
+			else if (n instanceof Parameter && ((Parameter) n).getId().getName().equals(name))
+				count += 1;
+			nodes.addAll(n.getChildrenNodes());
+		}
+		return count;
+	}
+
+	private static List<NameExpr> findNames(Node root, String name) {
+		List<NameExpr> names = new ArrayList<>();
+		List<Node> nodes = new ArrayList<>();
+		nodes.add(root);
+		while (!nodes.isEmpty()) {
+			Node n = nodes.remove(nodes.size() - 1);
+			if (n instanceof NameExpr && name.equals(((NameExpr) n).getName()))
+				names.add((NameExpr) n);
+			nodes.addAll(n.getChildrenNodes());
+		}
+		return names;
+	}
+
+	private static List<MethodCallExpr> findCalls(Node root, String name) {
+		List<MethodCallExpr> calls = new ArrayList<>();
+		List<Node> nodes = new ArrayList<>();
+		nodes.add(root);
+		while (!nodes.isEmpty()) {
+			Node n = nodes.remove(nodes.size() - 1);
+			if (n instanceof MethodCallExpr && name.equals(((MethodCallExpr) n).getName()))
+				calls.add((MethodCallExpr) n);
+			nodes.addAll(n.getChildrenNodes());
+		}
+		return calls;
+	}
+
+	// Return the dimensions of an array variable created with a size known at translation time
+	// (from its length attribute or integer literals), or null otherwise
+	public static String[] getStaticDims(Map<String, Map<String, String>> attr, VariableDeclarator var) {
+		if (!(var.getInit() instanceof ArrayCreationExpr))
+			return null;
+		ArrayCreationExpr init = (ArrayCreationExpr) var.getInit();
+		if (init.getInitializer() != null || init.getArrayCount() != 0 || init.getDimensions() == null
+				|| init.getDimensions().isEmpty())
+			return null;
+
+		String[] lengths = getLengths(attr, var.getId().getName(), init.getDimensions().size());
+		String[] dims = new String[init.getDimensions().size()];
+		for (int i = 0; i < dims.length; i += 1) {
+			if (lengths[i] != null)
+				dims[i] = lengths[i];
+			else if (init.getDimensions().get(i) instanceof IntegerLiteralExpr)
+				dims[i] = ((IntegerLiteralExpr) init.getDimensions().get(i)).getValue();
+			else
+				return null;
+		}
+		return dims;
+	}
+
+	// Return the length attribute of an array variable with the given number of dimensions
+	public static String[] getLengths(Map<String, Map<String, String>> attr, String varName, int numDims) {
+		String[] lengths = new String[numDims];
+		if (attr.containsKey(varName) && attr.get(varName).containsKey("length")) {
+			String[] values = attr.get(varName).get("length").split(",");
+			if (values.length != numDims)
+				throw new RuntimeException("Dimension mismatch for array variable " + varName);
+			for (int i = 0; i < numDims; i += 1)
+				lengths[i] = values[i].trim();
+		}
+		return lengths;
+	}
+
+	public static int getArrayDims(Type type) {
+		return (type instanceof ReferenceType) ? ((ReferenceType) type).getArrayCount() : 0;
+	}
+
+	public static MethodDeclaration getMethod(Node n) {
+		while (n != null && !(n instanceof MethodDeclaration))
+			n = n.getParentNode();
+		return (MethodDeclaration) n;
+	}
+
+	// Return the return statements of a method body, without the ones of nested classes and lambdas
+	private static List<ReturnStmt> getReturnStmts(Node n) {
+		List<ReturnStmt> returns = new ArrayList<>();
+		collectReturnStmts(n, returns);
+		return returns;
+	}
+
+	private static void collectReturnStmts(Node n, List<ReturnStmt> returns) {
+		if (n instanceof ReturnStmt)
+			returns.add((ReturnStmt) n);
+		for (Node child : n.getChildrenNodes()) {
+			if (!(child instanceof TypeDeclaration || child instanceof ObjectCreationExpr || child instanceof LambdaExpr))
+				collectReturnStmts(child, returns);
+		}
+	}
+
+	private static VariableDeclarator findLocalVariable(Node n, String name) {
+		if (n instanceof VariableDeclarationExpr) {
+			for (VariableDeclarator var : ((VariableDeclarationExpr) n).getVars()) {
+				if (var.getId().getName().equals(name))
+					return var;
+			}
+		}
+		for (Node child : n.getChildrenNodes()) {
+			VariableDeclarator var = findLocalVariable(child, name);
+			if (var != null)
+				return var;
+		}
+		return null;
+	}
+
+	// Check if an expression gives away the array itself or one of its rows
+	private static boolean escapes(Expression e, String name, int numDims) {
+		for (NameExpr use : findNames(e, name)) {
+			if (getAccessDepth(use) < numDims)
+				return true;
+		}
+		return false;
+	}
+
+	// Return the number of array accesses applied to a name
+	private static int getAccessDepth(NameExpr use) {
+		int depth = 0;
+		Node n = use;
+		while (n.getParentNode() instanceof ArrayAccessExpr && ((ArrayAccessExpr) n.getParentNode()).getName() == n) {
+			n = n.getParentNode();
+			depth += 1;
+		}
+		return depth;
+	}
+}
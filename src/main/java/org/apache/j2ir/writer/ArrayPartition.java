@@ -0,0 +1,78 @@
+package org.apache.j2ir.writer;
+
+import java.util.Map;
+
+/*
+	ArrayPartition builds the HLS ARRAY_PARTITION pragma of an array variable
+	from its config attributes:
+	- partition: cyclic, block or complete
+	- factor: number of banks of cyclic and block partitioning
+	- dim: dimension to partition, from 1 (default), or 0 for all the dimensions
+	The attributes are checked against the dimensions of the array and its length attribute.
+ */
+public class ArrayPartition {
+	final public static String PARTITION = "partition";
+	final public static String FACTOR = "factor";
+	final public static String DIM = "dim";
+
+	// Return the pragma of the variable, or null if it is not partitioned
+	public static String getPragma(String varName, Map<String, String> varAttr, int numDims) {
+		if (varAttr == null)
+			return null;
+		String type = varAttr.get(PARTITION);
+		if (type == null) {
+			if (varAttr.containsKey(FACTOR) || varAttr.containsKey(DIM))
+				throw new RuntimeException("Missing partition type of array variable " + varName);
+			return null;
+		}
+		if (numDims == 0)
+			throw new RuntimeException("Cannot partition non-array variable " + varName);
+
+		int dim = varAttr.containsKey(DIM) ? parseInt(varName, DIM, varAttr.get(DIM)) : 1;
+		if (dim > numDims)
+			throw new RuntimeException("Partition dimension " + dim + " of array variable " + varName
+					+ " exceeds its " + numDims + " dimensions");
+
+		StringBuilder pragma = new StringBuilder("#pragma HLS ARRAY_PARTITION variable=" + varName);
+		if (type.equals("complete")) {
+			if (varAttr.containsKey(FACTOR))
+				throw new RuntimeException("Complete partitioning of array variable " + varName + " takes no factor");
+			pragma.append(" complete");
+		} else if (type.equals("cyclic") || type.equals("block")) {
+			if (!varAttr.containsKey(FACTOR))
+				throw new RuntimeException("Missing partition factor of array variable " + varName);
+			int factor = parseInt(varName, FACTOR, varAttr.get(FACTOR));
+			if (factor == 0)
+				throw new RuntimeException("Invalid partition factor 0 of array variable " + varName);
+
+			// The factor cannot exceed the length of the partitioned dimension
+			String length = getLength(varAttr, dim);
+			if (length != null && length.matches("\\d+") && factor > Integer.parseInt(length))
+				throw new RuntimeException("Partition factor " + factor + " of array variable " + varName
+						+ " exceeds the length " + length + " of dimension " + dim);
+			pragma.append(" ").append(type).append(" factor=").append(factor);
+		} else {
+			throw new RuntimeException("Unknown partition type " + type + " of array variable " + varName);
+		}
+		pragma.append(" dim=").append(dim);
+		return pragma.toString();
+	}
+
+	private static String getLength(Map<String, String> varAttr, int dim) {
+		if (dim == 0 || !varAttr.containsKey("length"))
+			return null;
+		String[] lengths = varAttr.get("length").split(",");
+		return (dim <= lengths.length) ? lengths[dim - 1].trim() : null;
+	}
+
+	private static int parseInt(String varName, String attr, String value) {
+		try {
+			int v = Integer.parseInt(value.trim());
+			if (v < 0)
+				throw new NumberFormatException();
+			return v;
+		} catch (NumberFormatException e) {
+			throw new RuntimeException("Invalid " + attr + " " + value + " of array variable " + varName);
+		}
+	}
+}
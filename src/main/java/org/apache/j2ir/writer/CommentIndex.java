@@ -0,0 +1,79 @@
+package org.apache.j2ir.writer;
+
+import com.github.javaparser.PositionUtils;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.comments.Comment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+	CommentIndex orders the children of every node of a tree (usually a
+	CompilationUnit) by their begin positions once, so the orphan comments
+	before a child or at the end of a node are found without sorting the
+	children again for every member the writer emits.
+
+	The nodes are keyed by identity since JavaParser nodes compare structurally.
+	The tree must not be changed after it is indexed.
+ */
+public class CommentIndex {
+	private final Map<Node, Children> index = new IdentityHashMap<>();
+
+	public CommentIndex(Node root) {
+		List<Node> nodes = new ArrayList<>();
+		nodes.add(root);
+		while (!nodes.isEmpty()) {
+			Node n = nodes.remove(nodes.size() - 1);
+			List<Node> children = n.getChildrenNodes();
+			if (children.isEmpty())
+				continue;
+			index.put(n, new Children(children));
+			nodes.addAll(children);
+		}
+	}
+
+	// Return the orphan comments between the previous non-comment sibling and the node
+	public List<Node> getCommentsBefore(Node node) {
+		Node parent = node.getParentNode();
+		Children c = (parent == null) ? null : index.get(parent);
+		if (c == null)
+			throw new RuntimeException("My index not found!!! " + node);
+		Integer position = c.positions.get(node);
+		if (position == null)
+			throw new RuntimeException("My index not found!!! " + node);
+
+		int first = position;
+		while (first > 0 && c.sorted.get(first - 1) instanceof Comment)
+			first -= 1;
+		return c.sorted.subList(first, position);
+	}
+
+	// Return the orphan comments after the last non-comment child of the node
+	public List<Node> getCommentsAtEnd(Node node) {
+		Children c = index.get(node);
+		if (c == null)
+			return Collections.emptyList();
+		return c.sorted.subList(c.sorted.size() - c.commentsAtEnd, c.sorted.size());
+	}
+
+	private static class Children {
+		final List<Node> sorted;
+		final Map<Node, Integer> positions = new IdentityHashMap<>();
+		final int commentsAtEnd;
+
+		Children(List<Node> children) {
+			sorted = new ArrayList<>(children);
+			PositionUtils.sortByBeginPosition(sorted);
+			for (int i = 0; i < sorted.size(); i += 1)
+				positions.put(sorted.get(i), i);
+
+			int n = 0;
+			while (n < sorted.size() && sorted.get(sorted.size() - 1 - n) instanceof Comment)
+				n += 1;
+			commentsAtEnd = n;
+		}
+	}
+}
@@ -14,8 +14,15 @@ import org.apache.j2ir.model.FieldModel;
 import org.apache.j2ir.utils.Util;
 
 import java.io.BufferedWriter;
-import java.io.FileWriter;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -26,17 +33,57 @@ import java.util.Set;
 	The entry class will be flatten and put into the source file;
 	while other classes will be put into the header file.
  */
-public class CppWriter extends IRWriter {
+public class CppWriter extends IRWriter implements Closeable {
 
-	private final CodeWriter srcWriter = createCppCodeWriter();
-	private final CodeWriter headWriter = createCppCodeWriter();
+	private final CodeWriter srcWriter;
+	private final CodeWriter headWriter;
 	private final Map<String, Map<String, String>> attr;
 
 	private boolean writingKernelMethod = false;
+	private String[] kernelRetDims = null;
+	private LoopDirectives loopDirectives = new LoopDirectives();
+	private String arrayOrder = ArrayLayout.ROW_MAJOR;
+	private int arrayPadding = 1;
+	private ArrayLayout layout = null;
 
 	public CppWriter(Map<String, Map<String, String>> attr) {
 		this.attr = attr;
+		srcWriter = createCppCodeWriter();
+		headWriter = createCppCodeWriter();
+		init();
+	}
+
+	// Stream the code to <fileName>.h and <fileName>.cpp instead of keeping it in memory.
+	// The writer must be closed to complete the files.
+	public CppWriter(Map<String, Map<String, String>> attr, String fileName) throws IOException {
+		this.attr = attr;
+		headWriter = createCppCodeWriter(Files.newBufferedWriter(Paths.get(fileName + ".h"), StandardCharsets.UTF_8));
+		BufferedWriter srcFile;
+		try {
+			srcFile = Files.newBufferedWriter(Paths.get(fileName + ".cpp"), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			headWriter.close();
+			throw e;
+		}
+		srcWriter = createCppCodeWriter(srcFile);
+		init();
+	}
+
+	private void init() {
 		writer = srcWriter;
+
+		// Comments are not written to the C++ code
+		setSkipComments(true);
+	}
+
+	public void setLoopDirectives(LoopDirectives loopDirectives) {
+		this.loopDirectives = loopDirectives;
+	}
+
+	// Set the order (row, column or none) and the padding of the flattened arrays
+	public void setArrayLayout(String order, int padding) {
+		this.arrayOrder = order;
+		this.arrayPadding = padding;
 	}
 
 	protected void writeInclude(CodeWriter w) {
@@ -50,6 +97,12 @@ public class CppWriter extends IRWriter {
 		return w;
 	}
 
+	protected CodeWriter createCppCodeWriter(Writer out) {
+		CodeWriter w = new CodeWriter("\t", out);
+		writeInclude(w);
+		return w;
+	}
+
 	@Override
 	public String getCode() {
 		return srcWriter.getCode();
@@ -61,17 +114,27 @@ public class CppWriter extends IRWriter {
 
 	@Override
 	public void saveAsFile(String fileName) throws IOException {
-		BufferedWriter headerFile = new BufferedWriter(new FileWriter(fileName + ".h"));
-		headerFile.write(getHeaderCode());
-		headerFile.close();
+		try (BufferedWriter headerFile = Files.newBufferedWriter(Paths.get(fileName + ".h"), StandardCharsets.UTF_8)) {
+			headerFile.write(getHeaderCode());
+		}
 
-		BufferedWriter srcFile = new BufferedWriter(new FileWriter(fileName + ".cpp"));
-		srcFile.write(getCode());
-		srcFile.close();
+		try (BufferedWriter srcFile = Files.newBufferedWriter(Paths.get(fileName + ".cpp"), StandardCharsets.UTF_8)) {
+			srcFile.write(getCode());
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			headWriter.close();
+		} finally {
+			srcWriter.close();
+		}
 	}
 
 	public void writeToHead(final ClassOrInterfaceDeclaration n, ClassModel arg) {
 		writer = headWriter;
+		layout = new ArrayLayout(n, null, attr, arrayOrder, arrayPadding);
 		visit(n, arg);
 	}
 
@@ -80,6 +143,7 @@ public class CppWriter extends IRWriter {
 
 		// Only the entry class can be put in the source file.
 		assert (arg.isEntryClass());
+		layout = new ArrayLayout(n, (MethodDeclaration) arg.getKernelMethod().getDecl(), attr, arrayOrder, arrayPadding);
 
 		// TODO: Add base class's fields and methods as well
 		if (!Utils.isNullOrEmpty(n.getExtends())) {
@@ -373,32 +437,69 @@ public class CppWriter extends IRWriter {
 
 	@Override
 	public void visit(final ArrayAccessExpr n, final ClassModel arg) {
-		n.getName().accept(this, arg);
+		// An element of a flattened array is indexed with its offset
+		List<Expression> indexes = new ArrayList<>();
+		Expression base = n;
+		while (base instanceof ArrayAccessExpr) {
+			indexes.add(0, ((ArrayAccessExpr) base).getIndex());
+			base = ((ArrayAccessExpr) base).getName();
+		}
+		MethodDeclaration method = ArrayLayout.getMethod(n);
+		String name = (base instanceof NameExpr) ? ((NameExpr) base).getName() : null;
+		String[] dims = (name != null && indexes.size() > 1) ? layout.getDims(method, name) : null;
+		if (dims == null) {
+			n.getName().accept(this, arg);
+			writer.write("[");
+			n.getIndex().accept(this, arg);
+			writer.write("]");
+			return;
+		}
+
+		if (layout.isColumnMajor(method, name))
+			Collections.reverse(indexes);
+		String[] padded = layout.getPaddedDims(method, name, dims);
+		base.accept(this, arg);
 		writer.write("[");
-		n.getIndex().accept(this, arg);
+		for (int i = 2; i < indexes.size(); i += 1)
+			writer.write("(");
+		writeIndexOperand(indexes.get(0), false, arg);
+		for (int i = 1; i < indexes.size(); i += 1) {
+			writer.write(" * " + padded[i] + " + ");
+			writeIndexOperand(indexes.get(i), true, arg);
+			if (i < indexes.size() - 1)
+				writer.write(")");
+		}
 		writer.write("]");
 	}
 
+	// Write an operand of a multiplication or (if additive) an addition of an array offset
+	private void writeIndexOperand(final Expression e, final boolean additive, final ClassModel arg) {
+		boolean simple = e instanceof NameExpr || e instanceof LiteralExpr || e instanceof ArrayAccessExpr
+				|| e instanceof MethodCallExpr || e instanceof FieldAccessExpr || e instanceof EnclosedExpr;
+		if (e instanceof BinaryExpr) {
+			BinaryExpr.Operator op = ((BinaryExpr) e).getOperator();
+			simple = op == BinaryExpr.Operator.times || op == BinaryExpr.Operator.divide
+					|| op == BinaryExpr.Operator.remainder
+					|| (additive && (op == BinaryExpr.Operator.plus || op == BinaryExpr.Operator.minus));
+		}
+		if (!simple)
+			writer.write("(");
+		e.accept(this, arg);
+		if (!simple)
+			writer.write(")");
+	}
+
 	@Override
 	public void visit(final ArrayCreationExpr n, final ClassModel arg) {
-		// FIXME: Static declaration
-
-		// Check if user has specified the max length for this array
+		// Arrays of a known size are declared in place (see VariableDeclarationExpr), the
+		// others are allocated on the heap, which cannot be synthesized
 		assert (n.getParentNode() instanceof VariableDeclarator);
 		VariableDeclarator varDecl = (VariableDeclarator) n.getParentNode();
-		String [] maxLength = new String[n.getDimensions().size()];
-		if (attr.containsKey(varDecl.getId().getName())) {
-			Map<String, String> varAttr = attr.get(varDecl.getId().getName());
-			if (varAttr.containsKey("length")) {
-				maxLength = varAttr.get("length").split(",");
-				if (maxLength.length != n.getDimensions().size())
-					throw new RuntimeException("Dimension mismatch for array variable " + varDecl.getId().getName());
-			}
-			else {
-				for (int i = 0; i < n.getDimensions().size(); i += 1)
-					maxLength[i] = null;
-			}
-		}
+		logger.warning("Array variable " + varDecl.getId().getName()
+				+ " has an unknown size or is returned, allocate it on the heap");
+
+		// Check if user has specified the max length for this array
+		String [] maxLength = ArrayLayout.getLengths(attr, varDecl.getId().getName(), n.getDimensions().size());
 
 		writer.write("new ");
 		n.getType().accept(this, arg);
@@ -755,8 +856,10 @@ public class CppWriter extends IRWriter {
 		if (!arg.hasMethod(Util.getMethodSig(n)))
 			return;
 
-		if (arg.isKernelMethod(n))
+		if (arg.isKernelMethod(n)) {
 			writingKernelMethod = true;
+			kernelRetDims = layout.getKernelRetDims();
+		}
 
 		writeOrphanCommentsBeforeThisChildNode(n);
 
@@ -764,7 +867,7 @@ public class CppWriter extends IRWriter {
 		if (!Utils.isNullOrEmpty(n.getTypeParameters()))
 			writer.write(" ");
 
-		if (!writingKernelMethod)
+		if (kernelRetDims == null)
 			n.getType().accept(this, arg);
 		else
 			writer.write("void");
@@ -772,32 +875,35 @@ public class CppWriter extends IRWriter {
 		writer.write(n.getName());
 
 		writer.write("(");
+		boolean isFirst = true;
 		if (!Utils.isNullOrEmpty(n.getParameters())) {
-			for (final Iterator<Parameter> i = n.getParameters().iterator(); i
-					.hasNext(); ) {
-				final Parameter p = i.next();
-				p.accept(this, arg);
-				if (i.hasNext()) {
+			for (final Parameter p : n.getParameters()) {
+				if (!isFirst)
 					writer.write(", ");
-				}
+				p.accept(this, arg);
+				isFirst = false;
 			}
 		}
 
-		// Transform return value to an argument for the kernel method
-		if (arg.isKernelMethod(n)) {
-			if (!Utils.isNullOrEmpty(n.getParameters()))
+		// The returned array of the kernel method is written to a buffer of the caller
+		if (kernelRetDims != null) {
+			if (!isFirst)
 				writer.write(", ");
-			n.getType().accept(this, arg);
+			((ReferenceType) n.getType()).getType().accept(this, arg);
 			writer.write(" " + n.getName() + "_ret");
+			for (String dim : kernelRetDims)
+				writer.write("[" + dim + "]");
+			isFirst = false;
 		}
 
 		// Write field arguments for methods in the entry class
 		if (arg.isEntryClass()) {
 			Map<String, FieldModel> fields = arg.getFields();
 			for (String argName : fields.keySet()) {
-				if (!Utils.isNullOrEmpty(n.getParameters()) || writingKernelMethod)
+				if (!isFirst)
 					writer.write(", ");
 				writer.write(fields.get(argName).toString());
+				isFirst = false;
 			}
 		}
 
@@ -814,13 +920,76 @@ public class CppWriter extends IRWriter {
 			writer.write(";");
 		} else {
 			writer.write(" ");
-			n.getBody().accept(this, arg);
+			if (writingKernelMethod)
+				writeBlock(n.getBody(), getKernelPragmas(n, arg), arg);
+			else
+				n.getBody().accept(this, arg);
 		}
 		writingKernelMethod = false;
+		kernelRetDims = null;
+	}
+
+	// Return the pragmas of the kernel ports, written at the beginning of the kernel body
+	private List<String> getKernelPragmas(final MethodDeclaration n, final ClassModel arg) {
+		List<String> pragmas = new ArrayList<>();
+		List<String> partitions = new ArrayList<>();
+		if (!Utils.isNullOrEmpty(n.getParameters())) {
+			for (final Parameter p : n.getParameters()) {
+				String name = p.getId().getName();
+				addPortPragmas(name, getVarAttr(n, name), getNumDims(n, name,
+						ArrayLayout.getArrayDims(p.getType()) + p.getId().getArrayCount()), pragmas, partitions);
+			}
+		}
+
+		// The returned array is an output argument of the kernel
+		if (kernelRetDims != null) {
+			String port = n.getName() + "_ret";
+			Map<String, String> portAttr = new HashMap<>();
+			if (attr.containsKey(port))
+				portAttr.putAll(attr.get(port));
+			if (!portAttr.containsKey("length"))
+				portAttr.put("length", String.join(",", kernelRetDims));
+			addPortPragmas(port, portAttr, kernelRetDims.length, pragmas, partitions);
+		}
+
+		// The fields of the entry class are arguments of the kernel as well
+		for (FieldModel field : arg.getFields().values())
+			addPortPragmas(field.getName(), attr.get(field.getName()), ArrayLayout.getArrayDims(field.getType()),
+					pragmas, partitions);
+
+		pragmas.add(KernelInterface.getControlPragma());
+		pragmas.addAll(partitions);
+		return pragmas;
+	}
+
+	private static void addPortPragmas(String port, Map<String, String> portAttr, int numDims,
+			List<String> pragmas, List<String> partitions) {
+		pragmas.addAll(KernelInterface.getPragmas(port, portAttr, numDims));
+		String partition = ArrayPartition.getPragma(port, portAttr, numDims);
+		if (partition != null)
+			partitions.add(partition);
+	}
+
+	// Return the attributes of a variable of a method, with the length and the partition of the flattened arrays
+	private Map<String, String> getVarAttr(final MethodDeclaration method, final String name) {
+		String[] dims = layout.getDims(method, name);
+		return (dims == null) ? attr.get(name) : layout.getFlattenedAttr(method, name, dims);
+	}
+
+	private int getNumDims(final MethodDeclaration method, final String name, final int numDims) {
+		return (layout.getDims(method, name) == null) ? numDims : 1;
 	}
 
 	@Override
 	public void visit(final Parameter n, final ClassModel arg) {
+		// A flattened array is passed as a pointer to its first element
+		if (n.getParentNode() instanceof MethodDeclaration && layout != null
+				&& layout.getDims((MethodDeclaration) n.getParentNode(), n.getId().getName()) != null) {
+			((ReferenceType) n.getType()).getType().accept(this, arg);
+			writer.write("* " + n.getId().getName());
+			return;
+		}
+
 		if (n.getType() != null) {
 			n.getType().accept(this, arg);
 		}
@@ -863,6 +1032,19 @@ public class CppWriter extends IRWriter {
 
 	@Override
 	public void visit(final VariableDeclarationExpr n, final ClassModel arg) {
+		// Declare a local array of a known size in place instead of allocating it
+		if (n.getVars().size() == 1 && n.getType() instanceof ReferenceType) {
+			VariableDeclarator var = n.getVars().get(0);
+			String[] dims = layout.getDeclaredDims(var);
+			if (dims != null) {
+				((ReferenceType) n.getType()).getType().accept(this, arg);
+				writer.write(" " + var.getId().getName());
+				for (String dim : dims)
+					writer.write("[" + dim + "]");
+				return;
+			}
+		}
+
 		n.getType().accept(this, arg);
 		writer.write(" ");
 
@@ -894,13 +1076,21 @@ public class CppWriter extends IRWriter {
 
 	@Override
 	public void visit(final BlockStmt n, final ClassModel arg) {
+		writeBlock(n, Collections.<String>emptyList(), arg);
+	}
+
+	private void writeBlock(final BlockStmt n, final List<String> pragmas, final ClassModel arg) {
 		writeOrphanCommentsBeforeThisChildNode(n);
 		writer.writeln("{");
-		if (n.getStmts() != null) {
+		if (n.getStmts() != null || !pragmas.isEmpty()) {
 			writer.in();
-			for (final Statement s : n.getStmts()) {
-				s.accept(this, arg);
-				writer.writeln();
+			for (final String pragma : pragmas)
+				writer.writeln(pragma);
+			if (n.getStmts() != null) {
+				for (final Statement s : n.getStmts()) {
+					s.accept(this, arg);
+					writer.writeln();
+				}
 			}
 			writer.out();
 		}
@@ -908,6 +1098,25 @@ public class CppWriter extends IRWriter {
 		writer.write("}");
 	}
 
+	// Write the body of a loop with the HLS pragmas of the loop at its beginning
+	private void writeLoopBody(final Statement loop, final Statement body, final ClassModel arg) {
+		List<String> pragmas = loopDirectives.getPragmas(loop);
+		if (body instanceof BlockStmt) {
+			writeBlock((BlockStmt) body, pragmas, arg);
+		} else if (pragmas.isEmpty()) {
+			body.accept(this, arg);
+		} else {
+			writer.writeln("{");
+			writer.in();
+			for (final String pragma : pragmas)
+				writer.writeln(pragma);
+			body.accept(this, arg);
+			writer.writeln();
+			writer.out();
+			writer.write("}");
+		}
+	}
+
 	@Override
 	public void visit(final LabeledStmt n, final ClassModel arg) {
 		writer.write(n.getLabel());
@@ -925,6 +1134,21 @@ public class CppWriter extends IRWriter {
 		writeOrphanCommentsBeforeThisChildNode(n);
 		n.getExpression().accept(this, arg);
 		writer.write(";");
+
+		// Partition the local arrays after their declarations
+		if (n.getExpression() instanceof VariableDeclarationExpr) {
+			VariableDeclarationExpr expr = (VariableDeclarationExpr) n.getExpression();
+			for (final VariableDeclarator var : expr.getVars()) {
+				String name = var.getId().getName();
+				MethodDeclaration method = ArrayLayout.getMethod(n);
+				String pragma = ArrayPartition.getPragma(name, getVarAttr(method, name), getNumDims(method, name,
+						ArrayLayout.getArrayDims(expr.getType()) + var.getId().getArrayCount()));
+				if (pragma != null) {
+					writer.writeln();
+					writer.write(pragma);
+				}
+			}
+		}
 	}
 
 	@Override
@@ -976,11 +1200,20 @@ public class CppWriter extends IRWriter {
 	public void visit(final ReturnStmt n, final ClassModel arg) {
 		// TODO: Transform object return to argument passing.
 
-		if (writingKernelMethod)
-			writer.write(arg.getKernelMethod().getName() + "_ret = ");
-		else
-			writer.write("return");
+		// Copy the returned array to the caller buffer
+		if (writingKernelMethod && kernelRetDims != null) {
+			String copy = "memcpy(" + ((MethodDeclaration) arg.getKernelMethod().getDecl()).getName() + "_ret, "
+					+ ((NameExpr) n.getExpr()).getName() + ", sizeof(" + ((NameExpr) n.getExpr()).getName() + "));";
+			if (n.getParentNode() instanceof BlockStmt) {
+				writer.writeln(copy);
+				writer.write("return;");
+			} else {
+				writer.write("{ " + copy + " return; }");
+			}
+			return;
+		}
 
+		writer.write("return");
 		if (n.getExpr() != null) {
 			writer.write(" ");
 			n.getExpr().accept(this, arg);
@@ -1098,7 +1331,7 @@ public class CppWriter extends IRWriter {
 		writer.write("while (");
 		n.getCondition().accept(this, arg);
 		writer.write(") ");
-		n.getBody().accept(this, arg);
+		writeLoopBody(n, n.getBody(), arg);
 	}
 
 	@Override
@@ -1114,7 +1347,7 @@ public class CppWriter extends IRWriter {
 	@Override
 	public void visit(final DoStmt n, final ClassModel arg) {
 		writer.write("do ");
-		n.getBody().accept(this, arg);
+		writeLoopBody(n, n.getBody(), arg);
 		writer.write(" while (");
 		n.getCondition().accept(this, arg);
 		writer.write(");");
@@ -1127,7 +1360,7 @@ public class CppWriter extends IRWriter {
 		writer.write(" : ");
 		n.getIterable().accept(this, arg);
 		writer.write(") ");
-		n.getBody().accept(this, arg);
+		writeLoopBody(n, n.getBody(), arg);
 	}
 
 	@Override
@@ -1157,7 +1390,7 @@ public class CppWriter extends IRWriter {
 			}
 		}
 		writer.write(") ");
-		n.getBody().accept(this, arg);
+		writeLoopBody(n, n.getBody(), arg);
 	}
 
 	@Override
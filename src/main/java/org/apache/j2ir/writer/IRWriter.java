@@ -1,6 +1,5 @@
 package org.apache.j2ir.writer;
 
-import com.github.javaparser.PositionUtils;
 import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.TypeParameter;
 import com.github.javaparser.ast.body.BodyDeclaration;
@@ -14,10 +13,16 @@ import org.apache.j2ir.model.FieldModel;
 import org.apache.j2ir.utils.J2IRLogger;
 
 import java.io.BufferedWriter;
-import java.io.FileWriter;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
@@ -25,8 +30,15 @@ import java.util.logging.Logger;
 public abstract class IRWriter implements VoidVisitor<ClassModel> {
 	final protected static Logger logger = (new J2IRLogger()).logger;
 	protected CodeWriter writer;
-
-	public static class CodeWriter {
+	private boolean skipComments = false;
+	private final Map<Node, CommentIndex> commentIndexes = new IdentityHashMap<>();
+
+	/*
+		CodeWriter writes indented code either to a StringBuilder (getCode returns
+		the code) or streams it to a Writer, so the size of the written code does
+		not change the memory usage. A streaming CodeWriter must be closed.
+	 */
+	public static class CodeWriter implements Closeable {
 		final static private String lineSeparator;
 
 		static {
@@ -37,10 +49,22 @@ public abstract class IRWriter implements VoidVisitor<ClassModel> {
 		private final String indentation;
 		private int level = 0;
 		private boolean ined = false;
-		private final StringBuilder buf = new StringBuilder();
+		private final StringBuilder buf;
+		private final Writer out;
+
+		// Indentation strings by level
+		private final List<String> indents = new ArrayList<>();
 
 		public CodeWriter(final String indentation) {
 			this.indentation = indentation;
+			this.buf = new StringBuilder();
+			this.out = null;
+		}
+
+		public CodeWriter(final String indentation, final Writer out) {
+			this.indentation = indentation;
+			this.buf = null;
+			this.out = out;
 		}
 
 		public void in() {
@@ -52,8 +76,22 @@ public abstract class IRWriter implements VoidVisitor<ClassModel> {
 		}
 
 		private void makeIndent() {
-			for (int i = 0; i < level; i++) {
-				buf.append(indentation);
+			if (level <= 0)
+				return;
+			while (indents.size() <= level)
+				indents.add(indents.isEmpty() ? "" : indents.get(indents.size() - 1) + indentation);
+			append(indents.get(level));
+		}
+
+		private void append(final String s) {
+			if (buf != null) {
+				buf.append(s);
+				return;
+			}
+			try {
+				out.write(s);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
 			}
 		}
 
@@ -62,7 +100,7 @@ public abstract class IRWriter implements VoidVisitor<ClassModel> {
 				makeIndent();
 				ined = true;
 			}
-			buf.append(arg);
+			append(arg);
 		}
 
 		public void writeln(final String arg) {
@@ -71,17 +109,29 @@ public abstract class IRWriter implements VoidVisitor<ClassModel> {
 		}
 
 		public void writeln() {
-			buf.append(lineSeparator);
+			append(lineSeparator);
 			ined = false;
 		}
 
+		public boolean isStreaming() {
+			return out != null;
+		}
+
 		public String getCode() {
+			if (buf == null)
+				throw new RuntimeException("The code has been streamed to a file");
 			return buf.toString();
 		}
 
+		@Override
+		public void close() throws IOException {
+			if (out != null)
+				out.close();
+		}
+
 		@Override
 		public String toString() {
-			return getCode();
+			return isStreaming() ? super.toString() : getCode();
 		}
 	}
 
@@ -90,9 +140,9 @@ public abstract class IRWriter implements VoidVisitor<ClassModel> {
 	}
 
 	public void saveAsFile(String fileName) throws IOException {
-		BufferedWriter f = new BufferedWriter(new FileWriter(fileName));
-		f.write(writer.getCode());
-		f.close();
+		try (BufferedWriter f = Files.newBufferedWriter(Paths.get(fileName), StandardCharsets.UTF_8)) {
+			f.write(writer.getCode());
+		}
 	}
 
 	protected void writeMembers(final List<BodyDeclaration> members,
@@ -155,61 +205,40 @@ public abstract class IRWriter implements VoidVisitor<ClassModel> {
 		writer.write(")");
 	}
 
+	// Comments are not written (e.g. the target drops them), so they are not looked up
+	public void setSkipComments(boolean skipComments) {
+		this.skipComments = skipComments;
+	}
+
+	// Return the comment index of the tree of the node, built on first use
+	protected CommentIndex getCommentIndex(final Node node) {
+		Node root = node;
+		while (root.getParentNode() != null)
+			root = root.getParentNode();
+		CommentIndex index = commentIndexes.get(root);
+		if (index == null) {
+			index = new CommentIndex(root);
+			commentIndexes.put(root, index);
+		}
+		return index;
+	}
+
 	protected void writeOrphanCommentsBeforeThisChildNode(final Node node) {
-		if (node instanceof Comment)
+		if (skipComments || node instanceof Comment)
 			return;
 
-		Node parent = node.getParentNode();
-		if (parent == null)
+		if (node.getParentNode() == null)
 			return;
 
-		List<Node> everything = new LinkedList<>();
-		everything.addAll(parent.getChildrenNodes());
-		PositionUtils.sortByBeginPosition(everything);
-		int positionOfTheChild = -1;
-		for (int i = 0; i < everything.size(); i++) {
-			if (everything.get(i) == node)
-				positionOfTheChild = i;
-		}
-		if (positionOfTheChild == -1)
-			throw new RuntimeException("My index not found!!! " + node);
-
-		int positionOfPreviousChild = -1;
-		for (int i = positionOfTheChild - 1; i >= 0
-				&& positionOfPreviousChild == -1; i--) {
-			if (!(everything.get(i) instanceof Comment))
-				positionOfPreviousChild = i;
-		}
-		for (int i = positionOfPreviousChild + 1; i < positionOfTheChild; i++) {
-			Node nodeToPrint = everything.get(i);
-			if (!(nodeToPrint instanceof Comment))
-				throw new RuntimeException("Expected comment, instead "
-						+ nodeToPrint.getClass() + ". Position of previous child: "
-						+ positionOfPreviousChild + ", position of child "
-						+ positionOfTheChild);
-			nodeToPrint.accept(this, null);
-		}
+		for (Node comment : getCommentIndex(node).getCommentsBefore(node))
+			comment.accept(this, null);
 	}
 
 	protected void writeOrphanCommentsEnding(final Node node) {
-		List<Node> everything = new LinkedList<>();
-		everything.addAll(node.getChildrenNodes());
-		PositionUtils.sortByBeginPosition(everything);
-		if (everything.isEmpty()) {
+		if (skipComments)
 			return;
-		}
 
-		int commentsAtEnd = 0;
-		boolean findingComments = true;
-		while (findingComments && commentsAtEnd < everything.size()) {
-			Node last = everything.get(everything.size() - 1 - commentsAtEnd);
-			findingComments = (last instanceof Comment);
-			if (findingComments) {
-				commentsAtEnd++;
-			}
-		}
-		for (int i = 0; i < commentsAtEnd; i++) {
-			everything.get(everything.size() - commentsAtEnd + i).accept(this, null);
-		}
+		for (Node comment : getCommentIndex(node).getCommentsAtEnd(node))
+			comment.accept(this, null);
 	}
 }
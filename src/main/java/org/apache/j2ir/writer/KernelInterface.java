@@ -0,0 +1,113 @@
+package org.apache.j2ir.writer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/*
+	KernelInterface builds the HLS INTERFACE pragmas of the kernel ports.
+
+	By default an array is an m_axi port of the "gmem" bundle whose address is
+	an s_axilite register, and a scalar is an s_axilite register. The control
+	of the kernel (port=return) is always in the "control" bundle.
+
+	The config attributes of a port override the defaults:
+	- interface: m_axi, s_axilite or axis (arrays only for m_axi and axis)
+	- bundle: bundle of the m_axi or s_axilite interface
+	- burst: maximum read and write burst length of an m_axi port (1 to 256)
+	The depth of an m_axi port is the product of its length attribute.
+ */
+public class KernelInterface {
+	final public static String INTERFACE = "interface";
+	final public static String BUNDLE = "bundle";
+	final public static String BURST = "burst";
+
+	final public static String M_AXI = "m_axi";
+	final public static String S_AXILITE = "s_axilite";
+	final public static String AXIS = "axis";
+
+	final public static String DEFAULT_MEMORY_BUNDLE = "gmem";
+	final public static String CONTROL_BUNDLE = "control";
+
+	final private static int MAX_BURST = 256;
+
+	// Return the pragmas of a kernel port
+	public static List<String> getPragmas(String port, Map<String, String> portAttr, int numDims) {
+		String type = getAttr(portAttr, INTERFACE, (numDims > 0) ? M_AXI : S_AXILITE);
+		String bundle = getAttr(portAttr, BUNDLE, null);
+		if (getAttr(portAttr, BURST, null) != null && !type.equals(M_AXI))
+			throw new RuntimeException("Burst length of kernel port " + port + " needs an m_axi interface");
+
+		List<String> pragmas = new ArrayList<>();
+		if (type.equals(M_AXI) || type.equals(AXIS)) {
+			if (numDims == 0)
+				throw new RuntimeException("Scalar kernel port " + port + " cannot be a " + type + " interface");
+		} else if (!type.equals(S_AXILITE)) {
+			throw new RuntimeException("Unknown interface " + type + " of kernel port " + port);
+		}
+
+		if (type.equals(M_AXI)) {
+			StringBuilder pragma = new StringBuilder("#pragma HLS INTERFACE m_axi port=" + port + " offset=slave bundle=");
+			pragma.append((bundle == null) ? DEFAULT_MEMORY_BUNDLE : bundle);
+			String depth = getDepth(portAttr);
+			if (depth != null)
+				pragma.append(" depth=").append(depth);
+			String burst = getAttr(portAttr, BURST, null);
+			if (burst != null) {
+				int length = parseBurst(port, burst);
+				pragma.append(" max_read_burst_length=").append(length);
+				pragma.append(" max_write_burst_length=").append(length);
+			}
+			pragmas.add(pragma.toString());
+			pragmas.add(getControlPragma(port));
+		} else if (type.equals(AXIS)) {
+			if (bundle != null)
+				throw new RuntimeException("Stream kernel port " + port + " takes no bundle");
+			pragmas.add("#pragma HLS INTERFACE axis port=" + port);
+		} else {
+			pragmas.add("#pragma HLS INTERFACE s_axilite port=" + port + " bundle="
+					+ ((bundle == null) ? CONTROL_BUNDLE : bundle));
+		}
+		return pragmas;
+	}
+
+	// Return the pragma of the kernel control (start, done and the return value)
+	public static String getControlPragma() {
+		return getControlPragma("return");
+	}
+
+	private static String getControlPragma(String port) {
+		return "#pragma HLS INTERFACE s_axilite port=" + port + " bundle=" + CONTROL_BUNDLE;
+	}
+
+	private static String getAttr(Map<String, String> portAttr, String attr, String defaultValue) {
+		if (portAttr == null || !portAttr.containsKey(attr))
+			return defaultValue;
+		return portAttr.get(attr).trim();
+	}
+
+	// Number of elements of the port from its length attribute, or null if it is unknown
+	private static String getDepth(Map<String, String> portAttr) {
+		String length = getAttr(portAttr, "length", null);
+		if (length == null)
+			return null;
+		long depth = 1;
+		for (String l : length.split(",")) {
+			if (!l.trim().matches("\\d+"))
+				return null;
+			depth *= Long.parseLong(l.trim());
+		}
+		return String.valueOf(depth);
+	}
+
+	private static int parseBurst(String port, String value) {
+		try {
+			int length = Integer.parseInt(value);
+			if (length < 1 || length > MAX_BURST)
+				throw new NumberFormatException();
+			return length;
+		} catch (NumberFormatException e) {
+			throw new RuntimeException("Invalid burst length " + value + " of kernel port " + port);
+		}
+	}
+}
@@ -0,0 +1,191 @@
+package org.apache.j2ir.writer;
+
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.expr.AnnotationExpr;
+import com.github.javaparser.ast.expr.AssignExpr;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.MemberValuePair;
+import com.github.javaparser.ast.expr.NameExpr;
+import com.github.javaparser.ast.expr.NormalAnnotationExpr;
+import com.github.javaparser.ast.expr.VariableDeclarationExpr;
+import com.github.javaparser.ast.stmt.DoStmt;
+import com.github.javaparser.ast.stmt.ForStmt;
+import com.github.javaparser.ast.stmt.ForeachStmt;
+import com.github.javaparser.ast.stmt.Statement;
+import com.github.javaparser.ast.stmt.WhileStmt;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/*
+	LoopDirectives decides the HLS PIPELINE and UNROLL pragmas of every loop.
+
+	The directives of a loop come from, in increasing priority:
+	- the policy: "innermost" pipelines the innermost loops with II=1, "none" adds nothing
+	- an @Accel_Loop annotation of the method, for the innermost loops of the method
+	- a <loop> entry of the kernel XML named Class.method.loop, where loop is the loop variable
+	  of the decompiled loop, so the entry only applies to the loops of that method
+	Each of them only overrides the attributes it sets. The source labels and the annotations
+	of local variables are not kept in the class files, so they cannot name or annotate a loop.
+
+	The pipeline value is the initiation interval (0: not pipelined) and the unroll
+	value is the unroll factor (0: fully unrolled, 1: not unrolled).
+ */
+public class LoopDirectives {
+	final public static String POLICY_INNERMOST = "innermost";
+	final public static String POLICY_NONE = "none";
+	final public static String PIPELINE = "pipeline";
+	final public static String UNROLL = "unroll";
+
+	final private static String ANNOTATION = "Accel_Loop";
+	final private static int UNSET = -1;
+
+	private final Map<String, Map<String, String>> loopAttr;
+	private final String policy;
+
+	public LoopDirectives(Map<String, Map<String, String>> loopAttr, String policy) {
+		if (!policy.equals(POLICY_INNERMOST) && !policy.equals(POLICY_NONE))
+			throw new RuntimeException("Unknown loop policy " + policy);
+		this.loopAttr = loopAttr;
+		this.policy = policy;
+	}
+
+	public LoopDirectives() {
+		this(Collections.<String, Map<String, String>>emptyMap(), POLICY_INNERMOST);
+	}
+
+	// Return the pragmas to put at the beginning of the loop body
+	public List<String> getPragmas(Statement loop) {
+		int[] values = {UNSET, UNSET};
+		boolean innermost = !containsLoop(getBody(loop));
+
+		if (innermost && policy.equals(POLICY_INNERMOST))
+			values[0] = 1;
+
+		MethodDeclaration method = getMethod(loop);
+		if (innermost && method != null)
+			setFromAnnotations(values, method.getAnnotations());
+
+		String name = getQualifiedLoopName(loop, method);
+		if (name != null && loopAttr.containsKey(name)) {
+			Map<String, String> attrMap = loopAttr.get(name);
+			if (attrMap.containsKey(PIPELINE))
+				values[0] = parseValue(attrMap.get(PIPELINE), name);
+			if (attrMap.containsKey(UNROLL))
+				values[1] = parseValue(attrMap.get(UNROLL), name);
+		}
+
+		List<String> pragmas = new ArrayList<>();
+		if (values[0] > 0)
+			pragmas.add("#pragma HLS PIPELINE II=" + values[0]);
+		if (values[1] == 0)
+			pragmas.add("#pragma HLS UNROLL");
+		else if (values[1] > 1)
+			pragmas.add("#pragma HLS UNROLL factor=" + values[1]);
+		return pragmas;
+	}
+
+	public static boolean isLoop(Node n) {
+		return n instanceof ForStmt || n instanceof ForeachStmt || n instanceof WhileStmt || n instanceof DoStmt;
+	}
+
+	private static Statement getBody(Statement loop) {
+		if (loop instanceof ForStmt)
+			return ((ForStmt) loop).getBody();
+		else if (loop instanceof ForeachStmt)
+			return ((ForeachStmt) loop).getBody();
+		else if (loop instanceof WhileStmt)
+			return ((WhileStmt) loop).getBody();
+		else if (loop instanceof DoStmt)
+			return ((DoStmt) loop).getBody();
+		throw new RuntimeException("Not a loop: " + loop);
+	}
+
+	private static boolean containsLoop(Node n) {
+		if (isLoop(n))
+			return true;
+		for (Node child : n.getChildrenNodes()) {
+			if (containsLoop(child))
+				return true;
+		}
+		return false;
+	}
+
+	private static MethodDeclaration getMethod(Node n) {
+		while (n != null && !(n instanceof MethodDeclaration))
+			n = n.getParentNode();
+		return (MethodDeclaration) n;
+	}
+
+	// Return Class.method.loop for the loop of the method, or null if it has no name
+	private static String getQualifiedLoopName(Statement loop, MethodDeclaration method) {
+		String name = getLoopName(loop);
+		if (name == null || method == null)
+			return null;
+		Node n = method.getParentNode();
+		while (n != null && !(n instanceof ClassOrInterfaceDeclaration))
+			n = n.getParentNode();
+		if (n == null)
+			return null;
+		return ((ClassOrInterfaceDeclaration) n).getName() + "." + method.getName() + "." + name;
+	}
+
+	// The loop variable of the loop, declared or assigned in its initialization
+	private static String getLoopName(Statement loop) {
+		VariableDeclarationExpr var = getLoopVariable(loop);
+		if (var != null)
+			return var.getVars().get(0).getId().getName();
+
+		if (loop instanceof ForStmt && ((ForStmt) loop).getInit() != null && !((ForStmt) loop).getInit().isEmpty()) {
+			Expression init = ((ForStmt) loop).getInit().get(0);
+			if (init instanceof AssignExpr && ((AssignExpr) init).getTarget() instanceof NameExpr)
+				return ((NameExpr) ((AssignExpr) init).getTarget()).getName();
+		}
+		return null;
+	}
+
+	private static VariableDeclarationExpr getLoopVariable(Statement loop) {
+		if (loop instanceof ForeachStmt)
+			return ((ForeachStmt) loop).getVariable();
+		if (loop instanceof ForStmt && ((ForStmt) loop).getInit() != null && !((ForStmt) loop).getInit().isEmpty()) {
+			Expression init = ((ForStmt) loop).getInit().get(0);
+			if (init instanceof VariableDeclarationExpr && !((VariableDeclarationExpr) init).getVars().isEmpty())
+				return (VariableDeclarationExpr) init;
+		}
+		return null;
+	}
+
+	private static void setFromAnnotations(int[] values, List<AnnotationExpr> annotations) {
+		if (annotations == null)
+			return;
+		for (AnnotationExpr a : annotations) {
+			String name = a.getName().toString();
+			if (!(name.equals(ANNOTATION) || name.endsWith("." + ANNOTATION)) || !(a instanceof NormalAnnotationExpr))
+				continue;
+			List<MemberValuePair> pairs = ((NormalAnnotationExpr) a).getPairs();
+			if (pairs == null)
+				continue;
+			for (MemberValuePair p : pairs) {
+				if (p.getName().equals(PIPELINE))
+					values[0] = parseValue(p.getValue().toString(), ANNOTATION);
+				else if (p.getName().equals(UNROLL))
+					values[1] = parseValue(p.getValue().toString(), ANNOTATION);
+			}
+		}
+	}
+
+	private static int parseValue(String value, String owner) {
+		try {
+			int v = Integer.parseInt(value.trim());
+			if (v < UNSET)
+				throw new NumberFormatException();
+			return v;
+		} catch (NumberFormatException e) {
+			throw new RuntimeException("Invalid loop directive value " + value + " of " + owner);
+		}
+	}
+}
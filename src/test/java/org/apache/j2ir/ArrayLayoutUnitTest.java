@@ -0,0 +1,110 @@
+package org.apache.j2ir;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import org.apache.j2ir.utils.Util;
+import org.apache.j2ir.writer.ArrayLayout;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ArrayLayoutUnitTest {
+	private CompilationUnit cu;
+
+	private ArrayLayout build(String order, int padding) throws Exception {
+		return build("compute", order, padding);
+	}
+
+	private ArrayLayout build(String kernel, String order, int padding) throws Exception {
+		cu = Util.parseJavaCode(UnitTest.readFixture("ArrayLayout.java"));
+		ClassOrInterfaceDeclaration classDecl = Util.getClassOrInterfaceDeclarationByName(cu, "A");
+		Map<String, Map<String, String>> attr = new HashMap<>();
+		attr.put("in", Collections.singletonMap("length", "8, 16"));
+		return new ArrayLayout(classDecl, Util.getFirstMethodByName(cu, kernel), attr, order, padding);
+	}
+
+	@Test
+	public void testFlatten() throws Exception {
+		ArrayLayout layout = build(ArrayLayout.ROW_MAJOR, 1);
+		MethodDeclaration compute = Util.getFirstMethodByName(cu, "compute");
+		MethodDeclaration fill = Util.getFirstMethodByName(cu, "fill");
+
+		assertArrayEquals(new String[] {"4", "5"}, layout.getDims(compute, "m"));
+		assertArrayEquals(new String[] {"8", "16"}, layout.getDims(compute, "in"));
+
+		// The parameter of the callee takes the layout of the argument
+		assertArrayEquals(new String[] {"4", "5"}, layout.getDims(fill, "m"));
+
+		// A row of p is used and q has an unknown size
+		assertNull(layout.getDims(compute, "p"));
+		assertNull(layout.getDims(compute, "q"));
+		assertEquals("20", layout.getSize(new String[] {"4", "5"}));
+	}
+
+	@Test
+	public void testPadding() throws Exception {
+		ArrayLayout layout = build(ArrayLayout.ROW_MAJOR, 8);
+		assertArrayEquals(new String[] {"4", "8"}, layout.getPaddedDims(new String[] {"4", "5"}));
+		assertEquals("32", layout.getSize(new String[] {"4", "5"}));
+		assertEquals("N * 8", layout.getSize(new String[] {"N", "5"}));
+
+		layout = build(ArrayLayout.COLUMN_MAJOR, 8);
+		assertArrayEquals(new String[] {"5", "8"}, layout.getPaddedDims(new String[] {"4", "5"}));
+	}
+
+	// The ports keep the row-major order without padding, the internal arrays take the layout
+	@Test
+	public void testPorts() throws Exception {
+		ArrayLayout layout = build(ArrayLayout.COLUMN_MAJOR, 8);
+		MethodDeclaration compute = Util.getFirstMethodByName(cu, "compute");
+		MethodDeclaration fill = Util.getFirstMethodByName(cu, "fill");
+
+		assertTrue(layout.isPort(compute, "in"));
+		assertFalse(layout.isColumnMajor(compute, "in"));
+		assertArrayEquals(new String[] {"8", "16"}, layout.getPaddedDims(compute, "in", layout.getDims(compute, "in")));
+		assertEquals("128", layout.getFlattenedAttr(compute, "in", layout.getDims(compute, "in")).get("length"));
+
+		assertFalse(layout.isPort(compute, "m"));
+		assertTrue(layout.isColumnMajor(compute, "m"));
+		assertArrayEquals(new String[] {"5", "8"}, layout.getPaddedDims(compute, "m", layout.getDims(compute, "m")));
+		assertFalse(layout.isPort(fill, "m"));
+
+		// The array written to the caller buffer is a port, and so is the parameter it is passed to
+		layout = build("produce", ArrayLayout.COLUMN_MAJOR, 8);
+		MethodDeclaration produce = Util.getFirstMethodByName(cu, "produce");
+		assertArrayEquals(new String[] {"20"}, layout.getKernelRetDims());
+		assertTrue(layout.isPort(produce, "r"));
+		assertTrue(layout.isPort(Util.getFirstMethodByName(cu, "init"), "o"));
+		assertFalse(layout.isPort(produce, "t"));
+		assertEquals("40", layout.getSize(produce, "t", layout.getDims(produce, "t")));
+
+		// A parameter receiving a port and an internal array keeps all of them multidimensional
+		layout = build("mix", ArrayLayout.COLUMN_MAJOR, 8);
+		MethodDeclaration mix = Util.getFirstMethodByName(cu, "mix");
+		assertNull(layout.getDims(mix, "in"));
+		assertNull(layout.getDims(mix, "t"));
+		assertNull(layout.getDims(Util.getFirstMethodByName(cu, "sum"), "x"));
+
+		// Without a column order or padding, the ports and the internal arrays share the layout
+		layout = build("mix", ArrayLayout.ROW_MAJOR, 1);
+		mix = Util.getFirstMethodByName(cu, "mix");
+		assertArrayEquals(new String[] {"8", "16"}, layout.getDims(mix, "in"));
+		assertArrayEquals(new String[] {"8", "16"}, layout.getDims(mix, "t"));
+	}
+
+	@Test
+	public void testNone() throws Exception {
+		ArrayLayout layout = build(ArrayLayout.NONE, 1);
+		assertNull(layout.getDims(Util.getFirstMethodByName(cu, "compute"), "m"));
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testUnknownOrder() throws Exception {
+		build("diagonal", 1);
+	}
+}
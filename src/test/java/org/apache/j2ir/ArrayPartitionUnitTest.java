@@ -0,0 +1,56 @@
+package org.apache.j2ir;
+
+import org.apache.j2ir.writer.ArrayPartition;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ArrayPartitionUnitTest {
+
+	private static Map<String, String> attr(String... keyValues) {
+		Map<String, String> map = new HashMap<>();
+		for (int i = 0; i < keyValues.length; i += 2)
+			map.put(keyValues[i], keyValues[i + 1]);
+		return map;
+	}
+
+	@Test
+	public void testPragma() {
+		assertNull(ArrayPartition.getPragma("b", null, 2));
+		assertNull(ArrayPartition.getPragma("b", attr("length", "20, 30"), 2));
+		assertEquals("#pragma HLS ARRAY_PARTITION variable=b cyclic factor=4 dim=2",
+				ArrayPartition.getPragma("b", attr("length", "20, 30", "partition", "cyclic", "factor", "4", "dim", "2"), 2));
+		assertEquals("#pragma HLS ARRAY_PARTITION variable=a block factor=2 dim=1",
+				ArrayPartition.getPragma("a", attr("partition", "block", "factor", "2"), 1));
+		assertEquals("#pragma HLS ARRAY_PARTITION variable=b complete dim=0",
+				ArrayPartition.getPragma("b", attr("partition", "complete", "dim", "0"), 2));
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testDimOutOfRange() {
+		ArrayPartition.getPragma("a", attr("partition", "complete", "dim", "2"), 1);
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testFactorExceedsLength() {
+		ArrayPartition.getPragma("b", attr("length", "20, 30", "partition", "cyclic", "factor", "32", "dim", "2"), 2);
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testMissingFactor() {
+		ArrayPartition.getPragma("a", attr("partition", "cyclic"), 1);
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testScalar() {
+		ArrayPartition.getPragma("n", attr("partition", "complete"), 0);
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testUnknownType() {
+		ArrayPartition.getPragma("a", attr("partition", "banked", "factor", "2"), 1);
+	}
+}
@@ -0,0 +1,63 @@
+package org.apache.j2ir;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.FieldDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import org.apache.j2ir.model.ClassModel;
+import org.apache.j2ir.model.MethodModel;
+import org.apache.j2ir.utils.AstPruner;
+import org.apache.j2ir.utils.Util;
+import org.apache.j2ir.visitor.MethodVisitor;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class AstPrunerUnitTest {
+
+	@Test
+	public void testPruneUnit() throws Exception {
+		CompilationUnit cu = Util.parseJavaCode(UnitTest.readFixture("AstPruner.java"));
+		ClassOrInterfaceDeclaration classDecl = Util.getClassOrInterfaceDeclarationByName(cu, "A");
+		AstPruner.pruneUnit(cu, classDecl);
+
+		assertEquals(1, cu.getTypes().size());
+		assertSame(classDecl, cu.getTypes().get(0));
+		assertEquals(1, cu.getChildrenNodes().size());
+		assertTrue(cu.getAllContainedComments().isEmpty());
+	}
+
+	@Test
+	public void testPruneUnreachable() throws Exception {
+		CompilationUnit cu = Util.parseJavaCode(UnitTest.readFixture("AstPruner.java"));
+		ClassModel classModel = new ClassModel("A");
+		classModel.setDecl(Util.getClassOrInterfaceDeclarationByName(cu, "A"));
+		MethodDeclaration used = (MethodDeclaration) Util.getMethodDeclarationBySig(classModel.getDecl(), "used-int");
+		MethodDeclaration unused = (MethodDeclaration) Util.getMethodDeclarationBySig(classModel.getDecl(), "unused-int");
+
+		// Collect the used fields by visiting the reachable method as the kernel does
+		MethodModel methodModel = classModel.addMethod("used-int");
+		methodModel.setDecl(used);
+		classModel.buildOrUpdateTypeEnv();
+		methodModel.buildOrUpdateTypeEnv();
+		Map<String, ClassModel> usedClasses = new HashMap<>();
+		usedClasses.put("A", classModel);
+		new MethodVisitor(usedClasses).visit(used, methodModel);
+		assertTrue(classModel.hasField("v"));
+		assertFalse(classModel.hasField("u"));
+
+		AstPruner.pruneUnreachable(classModel);
+		assertNotNull(used.getBody());
+		assertNull(unused.getBody());
+		assertFalse(unused.toString().contains("return"));
+
+		// The field read by the reachable method keeps its initializer
+		FieldDeclaration v = (FieldDeclaration) classModel.getDecl().getMembers().get(0);
+		FieldDeclaration u = (FieldDeclaration) classModel.getDecl().getMembers().get(1);
+		assertEquals("1", v.getVariables().get(0).getInit().toString());
+		assertNull(u.getVariables().get(0).getInit());
+	}
+}
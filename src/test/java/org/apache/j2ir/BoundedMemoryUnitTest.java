@@ -0,0 +1,89 @@
+package org.apache.j2ir;
+
+import com.github.javaparser.ParseException;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.ConstructorDeclaration;
+import com.github.javaparser.ast.body.FieldDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import org.apache.j2ir.frontend.Frontend;
+import org.apache.j2ir.model.ClassModel;
+import org.apache.j2ir.utils.Metrics;
+import org.apache.j2ir.utils.Util;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+// The bounded memory mode prunes the unreachable members and releases the written classes
+public class BoundedMemoryUnitTest extends UnitTest {
+
+	@Test
+	public void testOverload() {
+		Options options = new Options();
+		options.setBoundedMemory(true);
+		doTest("framework/OverloadTest", options);
+	}
+
+	@Test
+	public void testPruneAndRelease() throws Exception {
+		Kernel kernel = buildKernel();
+		ClassModel b = kernel.getUsedClasses().get("B");
+		List<TypeDeclaration> types = ((CompilationUnit) b.getDecl().getParentNode()).getTypes();
+		assertEquals(1, types.size());
+		assertSame(b.getDecl(), types.get(0));
+
+		// The unreachable method and constructor are emptied and the unused field loses its initializer
+		MethodDeclaration used = (MethodDeclaration) Util.getMethodDeclarationBySig(b.getDecl(), "used-int");
+		MethodDeclaration unused = (MethodDeclaration) Util.getMethodDeclarationBySig(b.getDecl(), "unused-int");
+		assertNotNull(used.getBody());
+		assertNull(unused.getBody());
+		ConstructorDeclaration init = (ConstructorDeclaration) b.getDecl().getMembers().get(2);
+		ConstructorDeclaration defaultInit = (ConstructorDeclaration) b.getDecl().getMembers().get(3);
+		assertFalse(init.getBlock().getStmts().isEmpty());
+		assertTrue(defaultInit.getBlock().getStmts() == null || defaultInit.getBlock().getStmts().isEmpty());
+		FieldDeclaration v = (FieldDeclaration) b.getDecl().getMembers().get(0);
+		FieldDeclaration u = (FieldDeclaration) b.getDecl().getMembers().get(1);
+		assertEquals("1", v.getVariables().get(0).getInit().toString());
+		assertNull(u.getVariables().get(0).getInit());
+
+		// The used classes are released once written, the entry class is written last
+		kernel.writeCpp();
+		assertNull(b.getDecl());
+		assertTrue(b.getFields().isEmpty());
+		assertNull(b.getMethod("used-int").getDecl());
+		assertNotNull(kernel.getEntryClass().getDecl());
+	}
+
+	private static Kernel buildKernel() throws Exception {
+		final String code = UnitTest.readFixture("BoundedMemory.java");
+
+		// Every class is parsed again from the fixture, as the frontend decompiles it again
+		Frontend frontend = new Frontend() {
+			@Override
+			public CompilationUnit load(String classFilePath) throws ParseException {
+				return Util.parseJavaCode(code);
+			}
+
+			@Override
+			public CompilationUnit load(String classFilePath, Set<String> methodNames)
+					throws ParseException {
+				return Util.parseJavaCode(code);
+			}
+		};
+		Map<String, String> classSrcMap = new HashMap<>();
+		classSrcMap.put("K", "K.class");
+		classSrcMap.put("B", "B.class");
+
+		Options options = new Options();
+		options.setBoundedMemory(true);
+		MethodDeclaration kernelMethod = Util.getFirstMethodByName(frontend.load("K.class"), "run");
+		return new Kernel(kernelMethod, classSrcMap, frontend,
+				Collections.<String, Map<String, String>>emptyMap(), options, new Metrics());
+	}
+}
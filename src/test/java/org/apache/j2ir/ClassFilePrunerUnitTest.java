@@ -0,0 +1,82 @@
+package org.apache.j2ir;
+
+import org.apache.j2ir.utils.ClassFilePruner;
+import org.apache.j2ir.utils.Decompiler;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ClassFilePrunerUnitTest {
+
+	// Class to prune: reached() is requested and calls helper(), unreached() uses an anonymous class
+	public static class Sample {
+		public int reached(int x) {
+			return helper(x) + 1;
+		}
+
+		private int helper(int x) {
+			return x * 2;
+		}
+
+		public int unreached(final int x) {
+			Runnable r = new Runnable() {
+				@Override
+				public void run() {
+					System.out.println(x);
+				}
+			};
+			r.run();
+			return x;
+		}
+	}
+
+	private static byte[] readClass(String name) throws IOException {
+		try (InputStream in = ClassFilePrunerUnitTest.class.getResourceAsStream(name)) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buf = new byte[8192];
+			int n;
+			while ((n = in.read(buf)) != -1)
+				out.write(buf, 0, n);
+			return out.toByteArray();
+		}
+	}
+
+	private Map<String, byte[]> readSample() throws IOException {
+		Map<String, byte[]> classes = new HashMap<>();
+		classes.put("ClassFilePrunerUnitTest$Sample.class", readClass("ClassFilePrunerUnitTest$Sample.class"));
+		classes.put("ClassFilePrunerUnitTest$Sample$1.class", readClass("ClassFilePrunerUnitTest$Sample$1.class"));
+		return classes;
+	}
+
+	@Test
+	public void testPrune() throws Exception {
+		ClassFilePruner pruner = new ClassFilePruner("ClassFilePrunerUnitTest$Sample.class", readSample());
+		Map<String, byte[]> classes = pruner.prune(Collections.singleton("reached"));
+
+		assertEquals(1, classes.size());
+		assertEquals(1, pruner.getNumPrunedMethods());
+		assertEquals(1, pruner.getNumPrunedClasses());
+
+		String code = Decompiler.decompile("ClassFilePrunerUnitTest$Sample", classes);
+		assertTrue(code.contains("reached("));
+		assertTrue(code.contains("helper("));
+		assertFalse(code.contains("unreached("));
+	}
+
+	@Test
+	public void testKeepInnerClass() throws Exception {
+		ClassFilePruner pruner = new ClassFilePruner("ClassFilePrunerUnitTest$Sample.class", readSample());
+		Map<String, byte[]> classes = pruner.prune(Collections.singleton("unreached"));
+
+		assertEquals(2, classes.size());
+		assertEquals(2, pruner.getNumPrunedMethods());
+		assertEquals(0, pruner.getNumPrunedClasses());
+	}
+}
@@ -0,0 +1,44 @@
+package org.apache.j2ir;
+
+import org.apache.j2ir.writer.IRWriter.CodeWriter;
+import org.junit.Test;
+
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+public class CodeWriterUnitTest {
+
+	private void writeCode(CodeWriter w) {
+		w.writeln("void f() {");
+		w.in();
+		w.writeln("if (x) {");
+		w.in();
+		w.write("y = ");
+		w.writeln("1;");
+		w.out();
+		w.writeln("}");
+		w.out();
+		w.writeln("}");
+	}
+
+	@Test
+	public void testStreaming() throws Exception {
+		CodeWriter buffered = new CodeWriter("\t");
+		writeCode(buffered);
+		assertEquals("void f() {\n\tif (x) {\n\t\ty = 1;\n\t}\n}\n", buffered.getCode());
+
+		StringWriter out = new StringWriter();
+		CodeWriter streaming = new CodeWriter("\t", out);
+		writeCode(streaming);
+		streaming.close();
+		assertEquals(buffered.getCode(), out.toString());
+
+		try {
+			streaming.getCode();
+			fail("The code of a streaming writer is not kept");
+		} catch (RuntimeException e) {
+			// Expected
+		}
+	}
+}
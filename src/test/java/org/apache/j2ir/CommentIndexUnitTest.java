@@ -0,0 +1,58 @@
+package org.apache.j2ir;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.BodyDeclaration;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.comments.Comment;
+import com.github.javaparser.ast.type.PrimitiveType;
+import org.apache.j2ir.model.ClassModel;
+import org.apache.j2ir.utils.Util;
+import org.apache.j2ir.writer.CommentIndex;
+import org.apache.j2ir.writer.CppWriter;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class CommentIndexUnitTest {
+
+	@Test
+	public void testOrphanComments() throws Exception {
+		CompilationUnit cu = Util.parseJavaCode(UnitTest.readFixture("CommentIndex.java"));
+		ClassOrInterfaceDeclaration classDecl = Util.getClassOrInterfaceDeclarationByName(cu, "A");
+		List<BodyDeclaration> members = classDecl.getMembers();
+		CommentIndex index = new CommentIndex(cu);
+
+		assertTrue(index.getCommentsBefore(members.get(0)).isEmpty());
+		assertTrue(index.getCommentsBefore(members.get(2)).isEmpty());
+
+		// Comments separated by blank lines are orphans, in the order of the source
+		List<Node> comments = index.getCommentsBefore(members.get(1));
+		assertEquals(2, comments.size());
+		assertEquals("orphan 1", ((Comment) comments.get(0)).getContent().trim());
+		assertEquals("orphan 2", ((Comment) comments.get(1)).getContent().trim());
+
+		comments = index.getCommentsAtEnd(classDecl);
+		assertEquals(1, comments.size());
+		assertEquals("orphan 3", ((Comment) comments.get(0)).getContent().trim());
+	}
+
+	// The comments are not written to the C++ code, so the written class is the same as without them
+	@Test
+	public void testWriteComments() throws Exception {
+		CompilationUnit cu = Util.parseJavaCode(UnitTest.readFixture("CommentIndex.java"));
+		ClassModel classModel = new ClassModel("A");
+		classModel.setDecl(Util.getClassOrInterfaceDeclarationByName(cu, "A"));
+		classModel.addField(new PrimitiveType(PrimitiveType.Primitive.Int), "b");
+		classModel.addField(new PrimitiveType(PrimitiveType.Primitive.Int), "c");
+		classModel.addMethod("f-int");
+
+		CppWriter writer = new CppWriter(Collections.<String, Map<String, String>>emptyMap());
+		writer.writeToHead(classModel.getDecl(), classModel);
+		assertEquals(UnitTest.readFixture("CommentIndex_expected.h"), writer.getHeaderCode());
+	}
+}
@@ -0,0 +1,34 @@
+package org.apache.j2ir;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ConcurrentTranslatorUnitTest extends UnitTest {
+
+	// Translate several kernels at the same time in one JVM
+	@Test
+	public void testConcurrentTranslation() throws Exception {
+		String[] tests = {"framework/XMLTest", "framework/UsedClassTest", "framework/SingleInheritanceTest"};
+		ExecutorService executor = Executors.newFixedThreadPool(tests.length);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (final String test : tests) {
+				futures.add(executor.submit(new Runnable() {
+					@Override
+					public void run() {
+						doTest(test);
+					}
+				}));
+			}
+			for (Future<?> future : futures)
+				future.get();
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
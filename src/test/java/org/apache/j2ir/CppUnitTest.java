@@ -5,6 +5,7 @@ import org.junit.Test;
 public class CppUnitTest extends UnitTest {
 	@Test public void testXML() { doTest("framework/XMLTest"); }
 	@Test public void testUsedClass() { doTest("framework/UsedClassTest"); }
+	@Test public void testOverload() { doTest("framework/OverloadTest"); }
 
 	@Test
 	public void testScalaSource() {
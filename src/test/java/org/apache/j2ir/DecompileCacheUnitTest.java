@@ -0,0 +1,63 @@
+package org.apache.j2ir;
+
+import org.apache.j2ir.utils.DecompileCache;
+import org.apache.j2ir.utils.Metrics;
+import org.apache.j2ir.utils.Util;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class DecompileCacheUnitTest {
+	private File dir;
+
+	@Before
+	public void setUp() throws Exception {
+		dir = Files.createTempDirectory("j2ir-cache").toFile();
+	}
+
+	@After
+	public void tearDown() {
+		Util.deleteRecursively(dir);
+	}
+
+	// The hits and misses are counted in the metrics of each translation
+	@Test
+	public void testHitsAndMisses() throws Exception {
+		String classFilePath = new File(DecompileCacheUnitTest.class.getResource("UnitTest.class").toURI()).getPath();
+
+		Metrics metrics = new Metrics();
+		String javaCode = Util.decompileClass(classFilePath, null,
+				new DecompileCache(dir.getPath(), 1024 * 1024, 16), metrics);
+		assertEquals(0, metrics.getCounter("decompileCacheHits"));
+		assertEquals(1, metrics.getCounter("decompileCacheMisses"));
+		assertEquals(1, dir.list().length);
+
+		// A new cache reads the entry from the directory
+		metrics = new Metrics();
+		assertEquals(javaCode, Util.decompileClass(classFilePath, null,
+				new DecompileCache(dir.getPath(), 1024 * 1024, 16), metrics));
+		assertEquals(1, metrics.getCounter("decompileCacheHits"));
+		assertEquals(0, metrics.getCounter("decompileCacheMisses"));
+		assertEquals(0, metrics.getCounter("decompiledClasses"));
+
+		// Without a cache the class is always decompiled
+		metrics = new Metrics();
+		Util.decompileClass(classFilePath, metrics);
+		assertEquals(0, metrics.getCounter("decompileCacheHits"));
+		assertEquals(0, metrics.getCounter("decompileCacheMisses"));
+		assertEquals(1, metrics.getCounter("decompiledClasses"));
+	}
+
+	@Test
+	public void testEviction() {
+		DecompileCache cache = new DecompileCache(dir.getPath(), 150, 0);
+		cache.put("aaaa", new String(new char[100]).replace('\0', 'a'));
+		cache.put("bbbb", new String(new char[100]).replace('\0', 'b'));
+		assertEquals(1, dir.list().length);
+	}
+}
@@ -0,0 +1,68 @@
+package org.apache.j2ir;
+
+import org.apache.j2ir.utils.FixupReader;
+import org.apache.j2ir.utils.Metrics;
+import org.apache.j2ir.utils.RewriteRule;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+public class FixupReaderUnitTest {
+
+	private static String readAll(FixupReader reader) throws Exception {
+		StringBuilder sb = new StringBuilder();
+		char[] buf = new char[7]; // Smaller than a line
+		int n;
+		while ((n = reader.read(buf, 0, buf.length)) != -1)
+			sb.append(buf, 0, n);
+		reader.close();
+		return sb.toString();
+	}
+
+	@Test
+	public void testDefaultRules() throws Exception {
+		String code = "import a.b.C.class;\r\n"
+				+ "import a..D;\n"
+				+ "import java.util.List;\n"
+				+ "class A {\n"
+				+ "  int x = B.MODULE$.f(class.g());\n"
+				+ "}";
+		Metrics metrics = new Metrics();
+		String fixed = readAll(new FixupReader(new StringReader(code), metrics));
+		assertEquals("import java.util.List;\n"
+				+ "class A {\n"
+				+ "  int x = BSYNTHETIC_MODULE.f(super.g());\n"
+				+ "}\n", fixed);
+		assertEquals(1, metrics.getCounter("fixup.classImport"));
+		assertEquals(1, metrics.getCounter("fixup.emptyPackageImport"));
+		assertEquals(1, metrics.getCounter("fixup.module"));
+		assertEquals(1, metrics.getCounter("fixup.classDot"));
+		assertEquals(0, metrics.getCounter("fixup.emptyName"));
+	}
+
+	@Test
+	public void testAddRule() throws Exception {
+		RewriteRule rule = new RewriteRule("testMarker") {
+			@Override
+			protected String rewrite(String line) {
+				return line.contains("@TestMarker") ? line.replace("@TestMarker", "") : line;
+			}
+		};
+		Options options = new Options();
+		options.getFixupRules().add(rule);
+		Metrics metrics = new Metrics();
+		String fixed = new BufferedReader(new FixupReader(new StringReader("@TestMarker int x;\n"),
+				options.getFixupRules(), metrics)).readLine();
+		assertEquals(" int x;", fixed);
+		assertEquals(1, metrics.getCounter("fixup.testMarker"));
+
+		// The rule only applies to the translations with these options
+		assertEquals(FixupReader.getDefaultRules().size() + 1, options.getFixupRules().size());
+		assertEquals(FixupReader.getDefaultRules().size(), new Options().getFixupRules().size());
+		fixed = new BufferedReader(new FixupReader(new StringReader("@TestMarker int x;\n"), null)).readLine();
+		assertEquals("@TestMarker int x;", fixed);
+	}
+}
@@ -0,0 +1,58 @@
+package org.apache.j2ir;
+
+import org.apache.j2ir.writer.KernelInterface;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class KernelInterfaceUnitTest {
+
+	private static Map<String, String> attr(String... keyValues) {
+		Map<String, String> map = new HashMap<>();
+		for (int i = 0; i < keyValues.length; i += 2)
+			map.put(keyValues[i], keyValues[i + 1]);
+		return map;
+	}
+
+	@Test
+	public void testDefaults() {
+		assertEquals(Collections.singletonList("#pragma HLS INTERFACE s_axilite port=N bundle=control"),
+				KernelInterface.getPragmas("N", null, 0));
+		assertEquals(Arrays.asList("#pragma HLS INTERFACE m_axi port=a offset=slave bundle=gmem depth=600",
+				"#pragma HLS INTERFACE s_axilite port=a bundle=control"),
+				KernelInterface.getPragmas("a", attr("length", "20, 30"), 2));
+		assertEquals("#pragma HLS INTERFACE s_axilite port=return bundle=control", KernelInterface.getControlPragma());
+	}
+
+	@Test
+	public void testOverrides() {
+		assertEquals(Arrays.asList("#pragma HLS INTERFACE m_axi port=a offset=slave bundle=gmem1 "
+				+ "max_read_burst_length=16 max_write_burst_length=16",
+				"#pragma HLS INTERFACE s_axilite port=a bundle=control"),
+				KernelInterface.getPragmas("a", attr("bundle", "gmem1", "burst", "16"), 1));
+		assertEquals(Collections.singletonList("#pragma HLS INTERFACE axis port=a"),
+				KernelInterface.getPragmas("a", attr("interface", "axis"), 1));
+		assertEquals(Collections.singletonList("#pragma HLS INTERFACE s_axilite port=N bundle=regs"),
+				KernelInterface.getPragmas("N", attr("bundle", "regs"), 0));
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testScalarMemoryPort() {
+		KernelInterface.getPragmas("N", attr("interface", "m_axi"), 0);
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testInvalidBurst() {
+		KernelInterface.getPragmas("a", attr("burst", "512"), 1);
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testUnknownInterface() {
+		KernelInterface.getPragmas("a", attr("interface", "ap_fifo"), 1);
+	}
+}
@@ -0,0 +1,101 @@
+package org.apache.j2ir;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.stmt.Statement;
+import org.apache.j2ir.utils.Metrics;
+import org.apache.j2ir.utils.Util;
+import org.apache.j2ir.writer.LoopDirectives;
+import org.junit.Test;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+// The fixture is compiled and decompiled, so the loops are the ones the writer sees
+public class LoopDirectivesUnitTest {
+	@Test
+	public void testPolicy() throws Exception {
+		List<Statement> loops = getLoops();
+		LoopDirectives directives = new LoopDirectives();
+
+		// Only the innermost loops are pipelined; the method annotation unrolls them
+		assertEquals(Collections.emptyList(), directives.getPragmas(loops.get(0)));
+		assertEquals(Arrays.asList("#pragma HLS PIPELINE II=1", "#pragma HLS UNROLL factor=4"),
+				directives.getPragmas(loops.get(1)));
+		assertEquals(Collections.emptyList(), directives.getPragmas(loops.get(2)));
+		assertEquals(Arrays.asList("#pragma HLS PIPELINE II=1", "#pragma HLS UNROLL factor=4"),
+				directives.getPragmas(loops.get(3)));
+		assertEquals(Collections.singletonList("#pragma HLS PIPELINE II=1"), directives.getPragmas(loops.get(4)));
+
+		directives = new LoopDirectives(Collections.<String, Map<String, String>>emptyMap(), LoopDirectives.POLICY_NONE);
+		assertEquals(Collections.singletonList("#pragma HLS UNROLL factor=4"), directives.getPragmas(loops.get(1)));
+		assertEquals(Collections.emptyList(), directives.getPragmas(loops.get(4)));
+	}
+
+	@Test
+	public void testConfig() throws Exception {
+		List<Statement> loops = getLoops();
+		Map<String, Map<String, String>> loopAttr = new HashMap<>();
+
+		// The decompiler reuses the variable k of the slot of i, so k names both outer loops of f
+		loopAttr.put("A.f.k", Collections.singletonMap(LoopDirectives.PIPELINE, "2"));
+		loopAttr.put("A.f.j", Collections.singletonMap(LoopDirectives.UNROLL, "0"));
+		LoopDirectives directives = new LoopDirectives(loopAttr, LoopDirectives.POLICY_INNERMOST);
+
+		assertEquals(Collections.singletonList("#pragma HLS PIPELINE II=2"), directives.getPragmas(loops.get(0)));
+		assertEquals(Arrays.asList("#pragma HLS PIPELINE II=1", "#pragma HLS UNROLL"),
+				directives.getPragmas(loops.get(1)));
+		assertEquals(Arrays.asList("#pragma HLS PIPELINE II=2", "#pragma HLS UNROLL factor=4"),
+				directives.getPragmas(loops.get(3)));
+
+		// The entries only apply to the loops of their method
+		assertEquals(Collections.singletonList("#pragma HLS PIPELINE II=1"), directives.getPragmas(loops.get(4)));
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testUnknownPolicy() {
+		new LoopDirectives(Collections.<String, Map<String, String>>emptyMap(), "outermost");
+	}
+
+	// Return the loops of the decompiled fixture in the order of the code
+	private static List<Statement> getLoops() throws Exception {
+		File dir = Files.createTempDirectory("j2ir-loops").toFile();
+		try {
+			File src = new File(dir, "A.java");
+			Files.write(src.toPath(), UnitTest.readFixture("LoopDirectives.java").getBytes(StandardCharsets.UTF_8));
+			JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+			int rc = javac.run(null, null, null, "-g", "-cp", System.getProperty("java.class.path"),
+					"-d", dir.getPath(), src.getPath());
+			assertEquals("Cannot compile the fixture", 0, rc);
+
+			Metrics metrics = new Metrics();
+			String javaCode = Util.decompileClass(new File(dir, "A.class").getPath(), metrics);
+			CompilationUnit cu = Util.parseDecompiledCode(new StringReader(javaCode), metrics);
+			List<Statement> loops = new ArrayList<>();
+			collectLoops(cu, loops);
+			assertEquals(5, loops.size());
+			return loops;
+		} finally {
+			Util.deleteRecursively(dir);
+		}
+	}
+
+	private static void collectLoops(Node n, List<Statement> loops) {
+		if (LoopDirectives.isLoop(n))
+			loops.add((Statement) n);
+		for (Node child : n.getChildrenNodes())
+			collectLoops(child, loops);
+	}
+}
@@ -0,0 +1,54 @@
+package org.apache.j2ir;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.BodyDeclaration;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import org.apache.j2ir.model.MethodIndex;
+import org.apache.j2ir.model.MethodSignature;
+import org.apache.j2ir.utils.Util;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MethodIndexUnitTest {
+	private MethodIndex buildIndex() throws Exception {
+		CompilationUnit cu = Util.parseJavaCode(UnitTest.readFixture("MethodIndex.java"));
+		ClassOrInterfaceDeclaration classDecl = Util.getClassOrInterfaceDeclarationByName(cu, "A");
+		return new MethodIndex(classDecl);
+	}
+
+	@Test
+	public void testExactLookup() throws Exception {
+		MethodIndex index = buildIndex();
+		assertEquals("A-int", Util.getMethodSig(index.get("A-int")));
+		assertEquals("calc", Util.getMethodSig(index.get("calc")));
+		assertEquals("calc-int[]-int", Util.getMethodSig(index.get("calc-int[]-int")));
+		assertNull(index.get("calc-double"));
+		assertNull(index.get("other"));
+	}
+
+	@Test
+	public void testWildcardLookup() throws Exception {
+		MethodIndex index = buildIndex();
+
+		// The first declaration matching the wildcard is returned
+		BodyDeclaration decl = index.get("calc-null-int");
+		assertEquals("calc-String-int", Util.getMethodSig(decl));
+		assertEquals("calc-int", Util.getMethodSig(index.get("calc-null")));
+		assertNull(index.get("calc-null-null-int"));
+	}
+
+	@Test
+	public void testSignature() {
+		MethodSignature sig = MethodSignature.parse("calc-int[]-null");
+		assertEquals("calc", sig.getName());
+		assertEquals(2, sig.getArity());
+		assertTrue(sig.hasWildcard());
+		assertEquals("calc-int[]-null", sig.toString());
+		assertEquals(MethodSignature.parse("calc-int[]-null"), sig);
+		assertTrue(sig.matches(MethodSignature.parse("calc-int[]-double")));
+		assertFalse(sig.matches(MethodSignature.parse("calc-int-double")));
+		assertTrue(Util.isSameMethodSig("f-null", "f-int"));
+		assertFalse(Util.isSameMethodSig("f-int", "f-int-int"));
+	}
+}
@@ -0,0 +1,114 @@
+package org.apache.j2ir;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.NameExpr;
+import com.github.javaparser.ast.stmt.ForStmt;
+import com.github.javaparser.ast.stmt.Statement;
+import com.github.javaparser.ast.type.ClassOrInterfaceType;
+import com.github.javaparser.ast.type.PrimitiveType;
+import com.github.javaparser.ast.type.Type;
+import org.apache.j2ir.model.SymbolTable;
+import org.apache.j2ir.utils.Util;
+import org.apache.j2ir.visitor.TypeEnvBuilder;
+import org.apache.j2ir.visitor.TypeVisitor;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class SymbolTableUnitTest {
+	private final Type intType = new PrimitiveType(PrimitiveType.Primitive.Int);
+	private final Type floatType = new PrimitiveType(PrimitiveType.Primitive.Float);
+
+	@Test
+	public void testScopes() {
+		SymbolTable classScope = new SymbolTable();
+		classScope.put("a", intType);
+		classScope.put("b", intType);
+
+		SymbolTable methodScope = classScope.push();
+		methodScope.put("b", floatType);
+		methodScope.put("c", new ClassOrInterfaceType("A"));
+
+		// Inner symbols shadow the outer ones and are not visible outside
+		assertEquals(intType, methodScope.get("a"));
+		assertEquals(floatType, methodScope.get("b"));
+		assertEquals(intType, classScope.get("b"));
+		assertFalse(classScope.containsKey("c"));
+		assertTrue(methodScope.containsKey("a"));
+		assertFalse(methodScope.containsLocal("a"));
+		assertEquals(3, methodScope.size());
+		assertEquals(3, methodScope.entrySet().size());
+		for (Map.Entry<String, Type> e : methodScope.entrySet()) {
+			if (e.getKey().equals("b"))
+				assertEquals(floatType, e.getValue());
+		}
+
+		// Sibling scopes are independent
+		SymbolTable otherScope = classScope.push();
+		assertEquals(intType, otherScope.get("b"));
+		assertFalse(otherScope.containsKey("c"));
+
+		assertSame(classScope, methodScope.pop());
+		assertNull(classScope.pop());
+	}
+
+	// Variables of sibling blocks are declared in their own scopes
+	@Test
+	public void testBlockScopes() throws Exception {
+		CompilationUnit cu = Util.parseJavaCode("class A {\n"
+				+ "  int x;\n"
+				+ "  void f(int p) {\n"
+				+ "    { int t = p; g(t); }\n"
+				+ "    { float t = 1.0f; g(t); }\n"
+				+ "    for (int i = 0; i < p; i++) { long x = i; }\n"
+				+ "  }\n"
+				+ "}");
+		MethodDeclaration f = Util.getFirstMethodByName(cu, "f");
+		SymbolTable classScope = new SymbolTable();
+		classScope.put("x", intType);
+		SymbolTable methodScope = classScope.push();
+		TypeEnvBuilder builder = new TypeEnvBuilder(f);
+		builder.build(methodScope);
+
+		List<Statement> stmts = f.getBody().getStmts();
+		SymbolTable first = builder.getScopes().get(stmts.get(0));
+		SymbolTable second = builder.getScopes().get(stmts.get(1));
+		assertEquals("int", first.get("t").toString());
+		assertEquals("float", second.get("t").toString());
+		assertFalse(methodScope.containsKey("t"));
+		assertFalse(methodScope.containsKey("i"));
+
+		// The loop body shadows the field and the loop variable is in the loop scope
+		ForStmt loop = (ForStmt) stmts.get(2);
+		SymbolTable body = builder.getScopes().get(loop.getBody());
+		assertEquals("long", body.get("x").toString());
+		assertEquals("int", body.get("i").toString());
+		assertEquals(intType, methodScope.get("x"));
+		assertSame(builder.getScopes().get(loop), body.pop());
+	}
+
+	@Test
+	public void testTypeCache() {
+		SymbolTable classScope = new SymbolTable();
+		classScope.put("x", intType);
+		SymbolTable methodScope = classScope.push();
+
+		TypeVisitor visitor = new TypeVisitor(null);
+		Expression x = new NameExpr("x");
+		assertEquals(intType, visitor.visit(x, methodScope));
+		assertEquals(intType, methodScope.getTypeCache().get(x));
+
+		// A change of an enclosing scope invalidates the cached types
+		classScope.put("x", floatType);
+		assertTrue(methodScope.getTypeCache().isEmpty());
+		assertEquals(floatType, visitor.visit(x, methodScope));
+
+		methodScope.put("x", intType);
+		assertEquals(intType, visitor.visit(x, methodScope));
+	}
+}
@@ -2,8 +2,10 @@ package org.apache.j2ir;
 
 import org.apache.j2ir.utils.Util;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -14,6 +16,10 @@ class UnitTest {
 	private final String tmpOutputDir = "tmpOutput";
 
 	void doTest(String testName) {
+		doTest(testName, new Options());
+	}
+
+	void doTest(String testName, Options options) {
 		String kernelName = testName;
 		if (kernelName.contains("/"))
 			kernelName = kernelName.substring(kernelName.lastIndexOf('/') + 1, kernelName.length());
@@ -54,7 +60,7 @@ class UnitTest {
 			String goldenHeadFile = testPath + Util.ps + kernelName + "_expected.h";
 
 			System.out.println("Testing " + testName);
-			J2IR.main(args);
+			new Translator(args[0], args[1], args[2], options).translate();
 			int srcResCode = compareResult(goldenSrcFile, args[2] + ".cpp");
 			int headResCode = compareResult(goldenHeadFile, args[2] + ".h");
 			if (srcResCode == 0 && headResCode == 0)
@@ -71,6 +77,20 @@ class UnitTest {
 		}
 	}
 
+	// Return the content of a unit test fixture (src/test/resources/unit/<fileName>)
+	static String readFixture(String fileName) throws IOException {
+		try (InputStream in = UnitTest.class.getClassLoader().getResourceAsStream("unit/" + fileName)) {
+			if (in == null)
+				throw new RuntimeException("Cannot find fixture " + fileName);
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buf = new byte[4096];
+			int n;
+			while ((n = in.read(buf)) > 0)
+				out.write(buf, 0, n);
+			return out.toString("UTF-8");
+		}
+	}
+
 	private String getResourceFileFullPath(String fileName) {
 		final URL res = getClass().getClassLoader().getResource(fileName);
 		if (res == null)
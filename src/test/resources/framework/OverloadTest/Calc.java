@@ -0,0 +1,31 @@
+public class Calc {
+	private int val;
+
+	public Calc(int a) {
+		val = a;
+	}
+
+	public Calc(int a, int b) {
+		val = a * b;
+	}
+
+	public int calc() {
+		return val;
+	}
+
+	public int calc(int x) {
+		return val + x;
+	}
+
+	public int calc(int x, int y) {
+		return val + x * y;
+	}
+
+	public int calc(String s, int x) {
+		return val - x;
+	}
+
+	public int calc(double x) {
+		return val;
+	}
+}
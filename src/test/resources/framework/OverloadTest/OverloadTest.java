@@ -0,0 +1,12 @@
+public class OverloadTest {
+
+	public static void main(String[] args) {
+		System.out.println(compute(10));
+	}
+
+	public static int compute(int N) {
+		Calc a = new Calc(N);
+		Calc b = new Calc(N, 2);
+		return a.calc() + a.calc(N) + a.calc(N, N) + a.calc(null, N) + b.calc(N);
+	}
+}
@@ -0,0 +1,10 @@
+#include <math.h>
+#include <string.h>
+
+int compute(int N) {
+	#pragma HLS INTERFACE s_axilite port=N bundle=control
+	#pragma HLS INTERFACE s_axilite port=return bundle=control
+	Calc a = new Calc(N);
+	Calc b = new Calc(N, 2);
+	return a.calc() + a.calc(N) + a.calc(N, N) + a.calc((String) NULL, N) + b.calc(N);
+}
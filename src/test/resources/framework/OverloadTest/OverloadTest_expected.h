@@ -0,0 +1,33 @@
+#include <math.h>
+#include <string.h>
+class Calc {
+	public:
+
+	int val;
+
+	Calc(int a) {
+		this.val = a;
+	}
+
+	Calc(int a, int b) {
+		this.val = a * b;
+	}
+
+	int calc() {
+		return this.val;
+	}
+
+	int calc(int x) {
+		return this.val + x;
+	}
+
+	int calc(int x, int y) {
+		return this.val + x * y;
+	}
+
+	int calc(String s, int x) {
+		return this.val - x;
+	}
+
+
+}
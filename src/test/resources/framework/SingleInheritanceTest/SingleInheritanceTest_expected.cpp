@@ -2,6 +2,8 @@
 #include <string.h>
 
 int compute(int N) {
+	#pragma HLS INTERFACE s_axilite port=N bundle=control
+	#pragma HLS INTERFACE s_axilite port=return bundle=control
 	DerivedClass obj = new DerivedClass(N);
 	return obj.calc();
 }
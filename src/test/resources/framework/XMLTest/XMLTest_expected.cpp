@@ -1,12 +1,21 @@
 #include <math.h>
 #include <string.h>
 
-int** compute(int N, int* a) {
-	int** b = new int[20][ 30];
+void compute(int N, int* a, int compute_ret[600]) {
+	#pragma HLS INTERFACE s_axilite port=N bundle=control
+	#pragma HLS INTERFACE m_axi port=a offset=slave bundle=gmem0 depth=10 max_read_burst_length=64 max_write_burst_length=64
+	#pragma HLS INTERFACE s_axilite port=a bundle=control
+	#pragma HLS INTERFACE m_axi port=compute_ret offset=slave bundle=gmem depth=600
+	#pragma HLS INTERFACE s_axilite port=compute_ret bundle=control
+	#pragma HLS INTERFACE s_axilite port=return bundle=control
+	int b[600];
+	#pragma HLS ARRAY_PARTITION variable=b cyclic factor=2 dim=1
 	for (int i = 0; i < N; ++i) {
 		for (int j = 0; j < N + 10; ++j) {
-			b[i][j] = a[i] + 5 + j;
+			#pragma HLS PIPELINE II=1
+			b[i * 30 + j] = a[i] + 5 + j;
 		}
 	}
-	return b;
+	memcpy(compute_ret, b, sizeof(b));
+	return;
 }
@@ -0,0 +1,33 @@
+public class A {
+	static void fill(int[][] m, int v) {
+		m[0][1] = v;
+	}
+	static void init(int[][] o, int v) {
+		o[0][0] = v;
+	}
+	static int sum(int[][] x) {
+		return x[0][0] + x[1][1];
+	}
+	static int compute(int n, int[][] in) {
+		int[][] m = new int[4][5];
+		int[][] p = new int[4][5];
+		int[][] q = new int[n][5];
+		fill(m, n);
+		int[] row = p[1];
+		return m[1][2] + in[0][n] + row[0] + q[0][0];
+	}
+	static int mix(int n, int[][] in) {
+		int[][] t = new int[8][16];
+		int a = sum(in);
+		int b = sum(t);
+		return a + b;
+	}
+	static int[][] produce(int n, int[][] in) {
+		int[][] r = new int[4][5];
+		int[][] t = new int[4][5];
+		init(r, in[0][0]);
+		t[1][2] = n;
+		r[1][2] = t[1][2];
+		return r;
+	}
+}
@@ -0,0 +1,11 @@
+public class A {
+	// comment
+	int v = 1;
+	int u = 2;
+	public int used(int x) { return x + this.v; }
+	/* comment */
+	public int unused(int x) { return x * this.u; }
+}
+class B {
+	int w;
+}
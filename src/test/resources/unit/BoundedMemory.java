@@ -0,0 +1,14 @@
+public class K {
+	public static int run(int n) {
+		B b = new B(n);
+		return b.used(n);
+	}
+}
+class B {
+	int v = 1;
+	int u = 2;
+	public B(int x) { this.v = x; }
+	public B() { this.v = 0; }
+	public int used(int x) { return x + this.v; }
+	public int unused(int x) { return x * this.u; }
+}
@@ -0,0 +1,20 @@
+public class A {
+	int a;
+	// orphan 1
+
+	// orphan 2
+
+	int b;
+	int c;
+
+	int f(int x) {
+		// leading
+		int y = x + 1;
+
+		// before return
+
+		return y;
+		// end of body
+	}
+	// orphan 3
+}
@@ -0,0 +1,16 @@
+#include <math.h>
+#include <string.h>
+class A {
+	public:
+
+
+
+	int b;
+
+	int c;
+
+	int f(int x) {
+		int y = x + 1;
+		return y;
+	}
+}
@@ -0,0 +1,20 @@
+import org.apache.j2ir.annotation.Accel_Loop;
+
+class A {
+	@Accel_Loop(unroll = 4)
+	void f(int[][] a, int n) {
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++)
+				a[i][j] = 0;
+		}
+		while (n > 0) {
+			for (int k = 0; k < n; k++)
+				n--;
+		}
+	}
+
+	void g(int[] a, int n) {
+		for (int i = 0; i < n; i++)
+			a[i] = 0;
+	}
+}
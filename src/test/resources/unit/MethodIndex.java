@@ -0,0 +1,7 @@
+public class A {
+	public A(int v) {}
+	public int calc() { return 0; }
+	public int calc(int x) { return x; }
+	public int calc(String s, int x) { return x; }
+	public int calc(int[] a, int x) { return x; }
+}